@@ -0,0 +1,124 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import com.google.common.collect.Lists;
+import com.googlesource.gerrit.plugins.scripting.scala.ScalaPluginScriptEngine.ScalaClassLoader;
+import com.googlesource.gerrit.plugins.scripting.scala.SyntheticScalaPlugins.Plugin;
+import com.googlesource.gerrit.plugins.scripting.scala.SyntheticScalaPlugins.Shape;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import scala.reflect.internal.util.BatchSourceFile;
+import scala.reflect.internal.util.SourceFile;
+import scala.reflect.io.VirtualFile;
+
+/** Definition and listing of the classes of an already compiled Scala plugin. */
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ScalaClassLoaderBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class CompiledPlugin {
+    @Param({"ONE_FILE", "MANY_SMALL_FILES", "ONE_LARGE_FILE"})
+    public Shape shape;
+
+    Map<String, byte[]> classBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      Plugin plugin = SyntheticScalaPlugins.create(shape);
+      try {
+        List<SourceFile> sourceFiles = Lists.newArrayList();
+        for (Path scalaFile : plugin.scalaFiles) {
+          sourceFiles.add(
+              new BatchSourceFile(
+                  new VirtualFile(scalaFile.toString()),
+                  ScalaPluginScriptEngine.readScalaFile(scalaFile)));
+        }
+        ScalaClassLoader classLoader = new ScalaClassLoader();
+        ScalaCompiler compiler = new ScalaCompiler();
+        if (!compiler.compile(sourceFiles, classLoader.getVirtualDirectory())) {
+          throw new IllegalStateException(compiler.getReporter().getOutput());
+        }
+        classBytes = classLoader.getAllClassBytes();
+      } finally {
+        plugin.delete();
+      }
+    }
+  }
+
+  /** A class loader holding the compiled classes, before any of them is defined. */
+  @State(Scope.Thread)
+  public static class LoadedPlugin {
+    ScalaClassLoader classLoader;
+
+    @Setup(Level.Invocation)
+    public void setUp(CompiledPlugin compiledPlugin) {
+      classLoader = new ScalaClassLoader();
+      classLoader.setClassBytes(compiledPlugin.classBytes);
+    }
+  }
+
+  /** A class loader whose virtual directory holds the compiled classes, like after a compile. */
+  @State(Scope.Thread)
+  public static class CompilerOutput {
+    ScalaClassLoader classLoader;
+
+    @Setup(Level.Invocation)
+    public void setUp(CompiledPlugin compiledPlugin) throws IOException {
+      classLoader = new ScalaClassLoader();
+      classLoader.addClassBytes(compiledPlugin.classBytes);
+    }
+  }
+
+  @Benchmark
+  public void defineAllClasses(
+      LoadedPlugin plugin, CompiledPlugin compiledPlugin, Blackhole blackhole)
+      throws ClassNotFoundException {
+    for (String className : compiledPlugin.classBytes.keySet()) {
+      blackhole.consume(plugin.classLoader.loadClass(className));
+    }
+  }
+
+  @Benchmark
+  public void getAllLoadedClassNames(LoadedPlugin plugin, Blackhole blackhole) {
+    for (String className : plugin.classLoader.getAllLoadedClassNames()) {
+      blackhole.consume(className);
+    }
+  }
+
+  @Benchmark
+  public Map<String, byte[]> getAllClassBytes(CompilerOutput output) throws IOException {
+    return output.classLoader.getAllClassBytes();
+  }
+}
@@ -0,0 +1,98 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import com.googlesource.gerrit.plugins.scripting.scala.SyntheticScalaPlugins.Plugin;
+import com.googlesource.gerrit.plugins.scripting.scala.SyntheticScalaPlugins.Shape;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compilation of Scala plugins through {@link ScalaPluginScriptEngine#eval}.
+ *
+ * <p>A cold compile creates a new compiler for each plugin, while a warm compile reuses the one of
+ * the previous iterations, like the compiler pool does once Gerrit is running.
+ */
+@Fork(1)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ScalaCompileBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class CompileState {
+    @Param({"ONE_FILE", "MANY_SMALL_FILES", "ONE_LARGE_FILE"})
+    public Shape shape;
+
+    Plugin plugin;
+    ScalaProviderConfig config;
+    ScalaCompilerPool warmCompilerPool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      plugin = SyntheticScalaPlugins.create(shape);
+      config = SyntheticScalaPlugins.config(1);
+      warmCompilerPool = new ScalaCompilerPool(config);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      plugin.delete();
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 10)
+  public Set<Class<?>> coldCompile(CompileState state) throws Exception {
+    return SyntheticScalaPlugins.newScriptEngine(
+            state.plugin, state.config, new ScalaCompilerPool(state.config))
+        .eval(state.plugin.path);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @Warmup(iterations = 5, time = 5)
+  @Measurement(iterations = 5, time = 5)
+  public Set<Class<?>> warmCompile(CompileState state) throws Exception {
+    return SyntheticScalaPlugins.newScriptEngine(state.plugin, state.config, state.warmCompilerPool)
+        .eval(state.plugin.path);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Warmup(iterations = 3)
+  @Measurement(iterations = 5)
+  public void readSources(CompileState state, Blackhole blackhole) throws IOException {
+    for (Path scalaFile : state.plugin.scalaFiles) {
+      blackhole.consume(ScalaPluginScriptEngine.readScalaFile(scalaFile));
+    }
+  }
+}
@@ -0,0 +1,61 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of the plugin.
+ *
+ * <p>Accepts the usual JMH options. Unless told otherwise, it runs all the benchmarks with the GC
+ * profiler, which reports the allocations per operation, and writes the results as JSON.
+ */
+public class ScalaProviderBenchmarks {
+  private static final String BENCHMARKS = "com\\.googlesource\\.gerrit\\.plugins\\..*Benchmark";
+  private static final String RESULT_FILE = "scala-provider-benchmarks.json";
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    if (commandLine.shouldHelp()) {
+      commandLine.showHelp();
+      return;
+    }
+
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+    if (commandLine.getIncludes().isEmpty()) {
+      options.include(BENCHMARKS);
+    }
+    if (commandLine.getProfilers().isEmpty()) {
+      options.addProfiler(GCProfiler.class);
+    }
+    if (!commandLine.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (!commandLine.getResult().hasValue()) {
+      options.result(RESULT_FILE);
+    }
+
+    Runner runner = new Runner(options.build());
+    if (commandLine.shouldList()) {
+      runner.list();
+    } else {
+      runner.run();
+    }
+  }
+}
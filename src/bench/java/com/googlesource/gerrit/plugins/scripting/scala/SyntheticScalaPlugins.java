@@ -0,0 +1,141 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.config.PluginConfig;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.eclipse.jgit.lib.Config;
+
+/** Generates Scala plugins of various shapes for the benchmarks. */
+public class SyntheticScalaPlugins {
+  static final String PLUGIN_NAME = "scala-provider";
+
+  public enum Shape {
+    /** A single file with a handful of classes. */
+    ONE_FILE(1, 20),
+    /** A directory of many files with one class each. */
+    MANY_SMALL_FILES(200, 1),
+    /** A single generated file with many classes. */
+    ONE_LARGE_FILE(1, 1000);
+
+    final int files;
+    final int classesPerFile;
+
+    Shape(int files, int classesPerFile) {
+      this.files = files;
+      this.classesPerFile = classesPerFile;
+    }
+  }
+
+  /** A generated plugin, either a single file or a directory of files. */
+  static class Plugin {
+    final Path rootDir;
+    final Path path;
+    final List<Path> scalaFiles;
+
+    Plugin(Path rootDir, Path path, List<Path> scalaFiles) {
+      this.rootDir = rootDir;
+      this.path = path;
+      this.scalaFiles = scalaFiles;
+    }
+
+    void delete() throws IOException {
+      MoreFiles.deleteRecursively(rootDir, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  static Plugin create(Shape shape) throws IOException {
+    Path rootDir = Files.createTempDirectory("scala-provider-bench");
+    List<Path> scalaFiles = Lists.newArrayList();
+    Path path;
+    if (shape.files == 1) {
+      path = rootDir.resolve("bench-1.0.scala");
+      scalaFiles.add(path);
+    } else {
+      path = Files.createDirectory(rootDir.resolve("bench"));
+      for (int i = 0; i < shape.files; i++) {
+        scalaFiles.add(path.resolve("Bench" + i + ".scala"));
+      }
+    }
+
+    for (int i = 0; i < scalaFiles.size(); i++) {
+      StringBuilder scalaCode = new StringBuilder("package bench\n\n");
+      if (i == 0) {
+        scalaCode.append(
+            "class BenchModule extends com.google.inject.AbstractModule {\n"
+                + "  override def configure(): Unit = {}\n"
+                + "}\n\n");
+      }
+      for (int j = 0; j < shape.classesPerFile; j++) {
+        appendClass(scalaCode, i * shape.classesPerFile + j);
+      }
+      Files.write(scalaFiles.get(i), scalaCode.toString().getBytes(UTF_8));
+    }
+    return new Plugin(rootDir, path, scalaFiles);
+  }
+
+  // Each class also yields a companion object and a closure class, like typical plugin code
+  private static void appendClass(StringBuilder scalaCode, int n) {
+    scalaCode
+        .append("case class Item")
+        .append(n)
+        .append("(name: String, values: List[Int]) {\n")
+        .append("  def total: Int = values.filter(_ % 2 == 0).map(_ * ")
+        .append(n + 1)
+        .append(").sum\n")
+        .append("  def describe: String = s\"$name: $total\"\n")
+        .append("}\n\n")
+        .append("object Item")
+        .append(n)
+        .append(" {\n")
+        .append("  val Default = Item")
+        .append(n)
+        .append("(\"item")
+        .append(n)
+        .append("\", (1 to 10).toList)\n")
+        .append("}\n\n");
+  }
+
+  static ScalaProviderConfig config(int compilerPoolSize) {
+    Config gerritConfig = new Config();
+    gerritConfig.setInt("plugin", PLUGIN_NAME, "compilerPoolSize", compilerPoolSize);
+    gerritConfig.setInt("plugin", PLUGIN_NAME, "compilerPoolWarmUp", 0);
+    gerritConfig.setInt("plugin", PLUGIN_NAME, "compilerMaxRuns", Integer.MAX_VALUE);
+    gerritConfig.setBoolean("plugin", PLUGIN_NAME, "bytecodeCache", false);
+    return new ScalaProviderConfig(PluginConfig.createFromGerritConfig(PLUGIN_NAME, gerritConfig));
+  }
+
+  static ScalaPluginScriptEngine newScriptEngine(
+      Plugin plugin, ScalaProviderConfig config, ScalaCompilerPool compilerPool) {
+    return new ScalaPluginScriptEngine(
+        compilerPool,
+        new ScalaBytecodeCache(plugin.rootDir.resolve("data"), config),
+        new ScalaIncrementalStates(),
+        config,
+        new ScalaProviderMetrics(new DisabledMetricMaker()),
+        new ScalaCompileServerClient(config),
+        new ScalaCompileScheduler(config));
+  }
+
+  private SyntheticScalaPlugins() {}
+}
@@ -0,0 +1,113 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.web;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.gerrit.server.plugins.PluginEntry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Rendering and serving of an SSI page with nested includes. */
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SSIPageBenchmark {
+  private static final String PAGE = "index.html";
+  private static final int PAGE_LINES = 400;
+  private static final int INCLUDE_EVERY_LINES = 40;
+  private static final int INCLUDED_LINES = 20;
+
+  @State(Scope.Benchmark)
+  public static class Page {
+    /** Number of nested includes below each include directive of the page. */
+    @Param({"1", "4"})
+    public int includeDepth;
+
+    Path rootDir;
+    WebPluginScanner scanner;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      rootDir = Files.createTempDirectory("scala-provider-bench-ssi");
+      Files.createDirectories(rootDir.resolve("include"));
+
+      StringBuilder page = new StringBuilder();
+      for (int line = 0; line < PAGE_LINES; line++) {
+        if (line % INCLUDE_EVERY_LINES == 0) {
+          page.append("<!--#include virtual=\"include/level1.html\" -->\n");
+        }
+        page.append("<p>Line ").append(line).append(" of the page, with some text.</p>\n");
+      }
+      Files.write(rootDir.resolve(PAGE), page.toString().getBytes(UTF_8));
+
+      for (int level = 1; level <= includeDepth; level++) {
+        StringBuilder include = new StringBuilder();
+        for (int line = 0; line < INCLUDED_LINES; line++) {
+          include.append("<li>Included line ").append(line).append(" of level ");
+          include.append(level).append("</li>\n");
+        }
+        if (level < includeDepth) {
+          include.append("<!--#include virtual=\"level").append(level + 1).append(".html\" -->\n");
+        }
+        Files.write(
+            rootDir.resolve("include/level" + level + ".html"), include.toString().getBytes(UTF_8));
+      }
+      scanner = new WebPluginScanner(rootDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      scanner.close();
+      MoreFiles.deleteRecursively(rootDir, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  /** Renders the page from disk, as on its first request or after one of its files changed. */
+  @Benchmark
+  public long render(Page page) throws IOException {
+    return ByteStreams.exhaust(new SSIPageCache(page.rootDir).get(PAGE).openStream());
+  }
+
+  /** Looks up and reads the page as served on each request, once rendered. */
+  @Benchmark
+  public long serve(Page page) throws IOException {
+    Optional<PluginEntry> entry = page.scanner.getEntry(PAGE);
+    try (InputStream in = page.scanner.getInputStream(entry.get())) {
+      return ByteStreams.exhaust(in);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.web;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.gerrit.server.plugins.PluginEntry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Lookup, listing and reading of the static resources of a plugin, as done per HTTP request. */
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class WebPluginScannerBenchmark {
+  private static final int FILES_PER_DIRECTORY = 100;
+  private static final String[] EXTENSIONS = {"js", "css", "png", "html"};
+
+  @State(Scope.Benchmark)
+  public static class Resources {
+    @Param({"100", "10000"})
+    public int files;
+
+    /** Size of the cache of resource contents, 0 to read the resources from disk each time. */
+    @Param({"0", "67108864"})
+    public long resourceCacheMaxSize;
+
+    Path rootDir;
+    WebPluginScanner scanner;
+    List<String> resourcePaths;
+    List<String> missingPaths;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      rootDir = Files.createTempDirectory("scala-provider-bench-web");
+      resourcePaths = Lists.newArrayListWithCapacity(files);
+      missingPaths = Lists.newArrayListWithCapacity(files);
+      byte[] content = new byte[2048];
+      for (int i = 0; i < files; i++) {
+        String directory = "static/dir" + (i / FILES_PER_DIRECTORY);
+        String resourcePath = directory + "/resource" + i + "." + EXTENSIONS[i % EXTENSIONS.length];
+        Path resourceFile = rootDir.resolve(resourcePath);
+        Files.createDirectories(resourceFile.getParent());
+        if (resourcePath.endsWith("html")) {
+          Files.write(resourceFile, ("<html><body>page " + i + "</body></html>\n").getBytes(UTF_8));
+        } else {
+          Files.write(resourceFile, content);
+        }
+        resourcePaths.add(resourcePath);
+        missingPaths.add(directory + "/missing" + i + ".js");
+      }
+      scanner =
+          new WebPluginScanner(
+              rootDir, new GzipVariantCache(0), new WebResourceCache(resourceCacheMaxSize));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      scanner.close();
+      MoreFiles.deleteRecursively(rootDir, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  /** Walks through the resources, so that each lookup asks for a different one. */
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+
+    int next(int size) {
+      next = (next + 1) % size;
+      return next;
+    }
+  }
+
+  @Benchmark
+  public Optional<PluginEntry> getExistingEntry(Resources resources, Cursor cursor)
+      throws IOException {
+    return resources.scanner.getEntry(
+        resources.resourcePaths.get(cursor.next(resources.resourcePaths.size())));
+  }
+
+  @Benchmark
+  public Optional<PluginEntry> getMissingEntry(Resources resources, Cursor cursor)
+      throws IOException {
+    return resources.scanner.getEntry(
+        resources.missingPaths.get(cursor.next(resources.missingPaths.size())));
+  }
+
+  @Benchmark
+  public long getEntryAndRead(Resources resources, Cursor cursor) throws IOException {
+    Optional<PluginEntry> entry =
+        resources.scanner.getEntry(
+            resources.resourcePaths.get(cursor.next(resources.resourcePaths.size())));
+    try (InputStream in = resources.scanner.getInputStream(entry.get())) {
+      return ByteStreams.exhaust(in);
+    }
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void entries(Resources resources, Blackhole blackhole) {
+    Enumeration<PluginEntry> entries = resources.scanner.entries();
+    while (entries.hasMoreElements()) {
+      blackhole.consume(entries.nextElement());
+    }
+  }
+}
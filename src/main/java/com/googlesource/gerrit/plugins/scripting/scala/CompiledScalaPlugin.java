@@ -0,0 +1,42 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+
+/** Classes of a Scala plugin, together with the engine that compiled and defined them. */
+public class CompiledScalaPlugin {
+  private final ScalaPluginScriptEngine scriptEngine;
+  private final Set<Class<?>> classes;
+
+  public static CompiledScalaPlugin compile(ScalaPluginScriptEngine scriptEngine, Path srcFile)
+      throws IOException, ClassNotFoundException {
+    return new CompiledScalaPlugin(scriptEngine, scriptEngine.eval(srcFile));
+  }
+
+  private CompiledScalaPlugin(ScalaPluginScriptEngine scriptEngine, Set<Class<?>> classes) {
+    this.scriptEngine = scriptEngine;
+    this.classes = classes;
+  }
+
+  public ScalaPluginScriptEngine getScriptEngine() {
+    return scriptEngine;
+  }
+
+  public Set<Class<?>> getClasses() {
+    return classes;
+  }
+}
@@ -14,8 +14,14 @@
 package com.googlesource.gerrit.plugins.scripting.scala;
 
 import com.google.gerrit.extensions.registration.DynamicSet;
+import com.google.gerrit.lifecycle.LifecycleModule;
 import com.google.gerrit.server.plugins.ServerPluginProvider;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import com.googlesource.gerrit.plugins.web.GzipVariantCache;
+import com.googlesource.gerrit.plugins.web.WebResourceCache;
+import com.googlesource.gerrit.plugins.web.WebResourceMetrics;
 
 public class Module extends AbstractModule {
 
@@ -25,5 +31,33 @@ public class Module extends AbstractModule {
     bind(ScalaSettings.class);
     bind(ScalaReporter.class);
     bind(ScalaPluginScriptEngine.class);
+    bind(ScalaProviderConfig.class);
+    bind(ScalaBytecodeCache.class);
+    bind(ScalaProviderMetrics.class);
+    bind(ScalaCompileServerClient.class);
+    bind(WebResourceMetrics.class).asEagerSingleton();
+    install(
+        new LifecycleModule() {
+          @Override
+          protected void configure() {
+            listener().to(ScalaCompilerPool.class);
+            listener().to(ScalaCompileServerClient.class);
+            listener().to(ScalaPluginPreloader.class);
+            listener().to(ScalaPluginReloader.class);
+            listener().to(ScalaInterpreterPool.class);
+          }
+        });
+  }
+
+  @Provides
+  @Singleton
+  GzipVariantCache provideGzipVariantCache(ScalaProviderConfig config) {
+    return new GzipVariantCache(config.getGzipCacheMaxSize());
+  }
+
+  @Provides
+  @Singleton
+  WebResourceCache provideWebResourceCache(ScalaProviderConfig config) {
+    return new WebResourceCache(config.getResourceCacheMaxSize());
   }
 }
@@ -0,0 +1,200 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.gerrit.extensions.annotations.PluginData;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of the bytecode generated for Scala plugins.
+ *
+ * <p>Entries are jar files under the plugin data directory, named after a hash of the plugin
+ * sources and of the fingerprint of the compiler classpath given by {@link
+ * ScalaSettings#classPathFingerprint()}. The least recently used entries are evicted once the cache
+ * grows over its configured size.
+ */
+@Singleton
+public class ScalaBytecodeCache {
+  private static final Logger LOG = LoggerFactory.getLogger(ScalaBytecodeCache.class);
+  private static final String CACHE_EXTENSION = ".jar";
+  private static final String CLASS_EXTENSION = ".class";
+
+  private final Path cacheDir;
+  private final boolean enabled;
+  private final long maxSize;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  @Inject
+  public ScalaBytecodeCache(@PluginData Path dataDir, ScalaProviderConfig config) {
+    this.cacheDir = dataDir.resolve("bytecode-cache");
+    this.enabled = config.isBytecodeCacheEnabled();
+    this.maxSize = config.getBytecodeCacheMaxSize();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public String keyOf(List<Path> scalaFiles, String classPathFingerprint) throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(classPathFingerprint, UTF_8);
+    List<Path> sortedFiles = new ArrayList<>(scalaFiles);
+    sortedFiles.sort(Comparator.naturalOrder());
+    for (Path scalaFile : sortedFiles) {
+      byte[] content = Files.readAllBytes(scalaFile);
+      hasher.putString(scalaFile.toString(), UTF_8);
+      hasher.putInt(content.length);
+      hasher.putBytes(content);
+    }
+    return hasher.hash().toString();
+  }
+
+  public Optional<Map<String, byte[]>> get(String key) {
+    Path cacheFile = cacheFileOf(key);
+    if (!Files.isRegularFile(cacheFile)) {
+      misses.incrementAndGet();
+      return Optional.empty();
+    }
+
+    Map<String, byte[]> classes = Maps.newHashMap();
+    try (JarInputStream in = new JarInputStream(Files.newInputStream(cacheFile))) {
+      for (JarEntry entry = in.getNextJarEntry(); entry != null; entry = in.getNextJarEntry()) {
+        String entryName = entry.getName();
+        if (entryName.endsWith(CLASS_EXTENSION)) {
+          classes.put(classNameOf(entryName), ByteStreams.toByteArray(in));
+        }
+      }
+      Files.setLastModifiedTime(cacheFile, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      LOG.warn("Cannot read Scala bytecode cache entry " + cacheFile + ", ignoring it", e);
+      misses.incrementAndGet();
+      return Optional.empty();
+    }
+    hits.incrementAndGet();
+    return Optional.of(classes);
+  }
+
+  public void put(String key, Map<String, byte[]> classes) {
+    Path cacheFile = cacheFileOf(key);
+    try {
+      Files.createDirectories(cacheDir);
+      Path tmpFile = Files.createTempFile(cacheDir, key, ".tmp");
+      try {
+        try (OutputStream out = Files.newOutputStream(tmpFile);
+            JarOutputStream jar = new JarOutputStream(out)) {
+          for (Map.Entry<String, byte[]> classEntry : classes.entrySet()) {
+            jar.putNextEntry(new JarEntry(entryNameOf(classEntry.getKey())));
+            jar.write(classEntry.getValue());
+            jar.closeEntry();
+          }
+        }
+        Files.move(tmpFile, cacheFile, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tmpFile);
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot store Scala bytecode cache entry " + cacheFile, e);
+      return;
+    }
+    evictOverflow();
+  }
+
+  private synchronized void evictOverflow() {
+    List<Path> cacheFiles = new ArrayList<>();
+    long totalSize = 0;
+    try (DirectoryStream<Path> dir = Files.newDirectoryStream(cacheDir, "*" + CACHE_EXTENSION)) {
+      for (Path cacheFile : dir) {
+        cacheFiles.add(cacheFile);
+        totalSize += Files.size(cacheFile);
+      }
+      if (totalSize <= maxSize) {
+        return;
+      }
+
+      cacheFiles.sort(Comparator.comparing(ScalaBytecodeCache::lastModifiedTime));
+      for (Path cacheFile : cacheFiles) {
+        if (totalSize <= maxSize) {
+          break;
+        }
+        long fileSize = Files.size(cacheFile);
+        if (Files.deleteIfExists(cacheFile)) {
+          totalSize -= fileSize;
+          evictions.incrementAndGet();
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot evict entries from Scala bytecode cache " + cacheDir, e);
+    }
+  }
+
+  private static FileTime lastModifiedTime(Path file) {
+    try {
+      return Files.getLastModifiedTime(file);
+    } catch (IOException e) {
+      return FileTime.fromMillis(0);
+    }
+  }
+
+  private Path cacheFileOf(String key) {
+    return cacheDir.resolve(key + CACHE_EXTENSION);
+  }
+
+  private static String entryNameOf(String className) {
+    return className.replace('.', '/') + CLASS_EXTENSION;
+  }
+
+  private static String classNameOf(String entryName) {
+    return entryName.substring(0, entryName.length() - CLASS_EXTENSION.length()).replace('/', '.');
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+}
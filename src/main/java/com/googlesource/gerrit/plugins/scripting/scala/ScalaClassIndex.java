@@ -0,0 +1,195 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gerrit.extensions.annotations.Export;
+import com.google.gerrit.extensions.annotations.Listen;
+import java.util.Map;
+import java.util.Set;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Index of the compiled classes of a Scala plugin, built from the class file headers only.
+ *
+ * <p>Allows finding the classes Gerrit needs to register, without defining all the anonymous
+ * function, closure and companion classes generated by scalac.
+ */
+public class ScalaClassIndex {
+  private static final String SCALA_ANNOTATION_PREFIX = "scala.";
+  private static final String EXPORT_DESCRIPTOR = Type.getDescriptor(Export.class);
+  private static final String LISTEN_DESCRIPTOR = Type.getDescriptor(Listen.class);
+  private static final int SCAN_FLAGS =
+      ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
+  private final Map<String, ClassHeader> classes;
+
+  private static class ClassHeader extends ClassVisitor {
+    private String superName;
+    private Set<String> interfaces = ImmutableSet.of();
+    private boolean local;
+    private final Set<String> annotations = Sets.newHashSet();
+    private String exportName;
+    private boolean listener;
+
+    ClassHeader() {
+      super(Opcodes.ASM7);
+    }
+
+    @Override
+    public void visit(
+        int version,
+        int access,
+        String name,
+        String signature,
+        String superName,
+        String[] interfaces) {
+      this.superName = superName != null ? binaryNameOf(superName) : null;
+      this.interfaces = Sets.newHashSet();
+      for (String interfaceName : interfaces) {
+        this.interfaces.add(binaryNameOf(interfaceName));
+      }
+    }
+
+    @Override
+    public void visitOuterClass(String owner, String name, String descriptor) {
+      local = true;
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+      if (!visible) {
+        return null;
+      }
+      annotations.add(Type.getType(descriptor).getClassName());
+      if (descriptor.equals(LISTEN_DESCRIPTOR)) {
+        listener = true;
+      } else if (descriptor.equals(EXPORT_DESCRIPTOR)) {
+        return new AnnotationVisitor(Opcodes.ASM7) {
+          @Override
+          public void visit(String name, Object value) {
+            if (name.equals("value")) {
+              exportName = String.valueOf(value);
+            }
+          }
+        };
+      }
+      return null;
+    }
+  }
+
+  public static ScalaClassIndex of(Map<String, byte[]> classBytes) {
+    Map<String, ClassHeader> classes = Maps.newHashMapWithExpectedSize(classBytes.size());
+    for (Map.Entry<String, byte[]> classEntry : classBytes.entrySet()) {
+      ClassHeader header = new ClassHeader();
+      new ClassReader(classEntry.getValue()).accept(header, SCAN_FLAGS);
+      classes.put(classEntry.getKey(), header);
+    }
+    return new ScalaClassIndex(classes);
+  }
+
+  private ScalaClassIndex(Map<String, ClassHeader> classes) {
+    this.classes = classes;
+  }
+
+  public Set<String> getClassNames() {
+    return classes.keySet();
+  }
+
+  public Set<String> getAnnotations(String className) {
+    ClassHeader header = classes.get(className);
+    return header != null ? header.annotations : ImmutableSet.of();
+  }
+
+  /**
+   * Returns the classes Gerrit looks at when registering a plugin: the ones annotated with
+   * non-Scala annotations, like {@code @Export} or {@code @Listen}, and the Guice modules.
+   *
+   * @param parentClassLoader class loader resolving the base classes defined outside the plugin.
+   */
+  public Set<String> getPluginEntryPoints(ClassLoader parentClassLoader) {
+    Set<String> entryPoints = Sets.newHashSet();
+    for (Map.Entry<String, ClassHeader> classEntry : classes.entrySet()) {
+      ClassHeader header = classEntry.getValue();
+      if (!header.local
+          && (hasPluginAnnotation(header)
+              || isGuiceModule(classEntry.getKey(), parentClassLoader))) {
+        entryPoints.add(classEntry.getKey());
+      }
+    }
+    return entryPoints;
+  }
+
+  /**
+   * Returns the classes annotated with {@code @Export} or {@code @Listen}, mapped to their export
+   * name, or to their simple name for listeners.
+   */
+  public Map<String, String> getExports() {
+    Map<String, String> exports = Maps.newHashMap();
+    for (Map.Entry<String, ClassHeader> classEntry : classes.entrySet()) {
+      ClassHeader header = classEntry.getValue();
+      if (header.local) {
+        continue;
+      }
+      String className = classEntry.getKey();
+      if (header.exportName != null) {
+        exports.put(className, header.exportName);
+      } else if (header.listener) {
+        exports.put(className, className.substring(className.lastIndexOf('.') + 1));
+      }
+    }
+    return exports;
+  }
+
+  private static boolean hasPluginAnnotation(ClassHeader header) {
+    for (String annotation : header.annotations) {
+      if (!annotation.startsWith(SCALA_ANNOTATION_PREFIX)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isGuiceModule(String className, ClassLoader parentClassLoader) {
+    ClassHeader header = classes.get(className);
+    if (header == null) {
+      try {
+        return com.google.inject.Module.class.isAssignableFrom(
+            Class.forName(className, false, parentClassLoader));
+      } catch (ClassNotFoundException | LinkageError e) {
+        return false;
+      }
+    }
+
+    if (header.superName != null && isGuiceModule(header.superName, parentClassLoader)) {
+      return true;
+    }
+    for (String interfaceName : header.interfaces) {
+      if (isGuiceModule(interfaceName, parentClassLoader)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String binaryNameOf(String internalName) {
+    return internalName.replace('/', '.');
+  }
+}
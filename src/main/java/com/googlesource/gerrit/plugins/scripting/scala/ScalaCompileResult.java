@@ -0,0 +1,147 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/** Outcome of a compilation by the {@link ScalaCompileServer}, as sent back to Gerrit. */
+public class ScalaCompileResult {
+  private final boolean success;
+  private final boolean incremental;
+  private final String output;
+  private final Map<String, String> topLevelSymbols;
+  private final Map<String, byte[]> classBytes;
+  private final Map<String, Long> phaseMillis;
+
+  public ScalaCompileResult(
+      boolean success,
+      boolean incremental,
+      String output,
+      Map<String, String> topLevelSymbols,
+      Map<String, byte[]> classBytes,
+      Map<String, Long> phaseMillis) {
+    this.success = success;
+    this.incremental = incremental;
+    this.output = output;
+    this.topLevelSymbols = topLevelSymbols;
+    this.classBytes = classBytes;
+    this.phaseMillis = phaseMillis;
+  }
+
+  public boolean isSuccess() {
+    return success;
+  }
+
+  /**
+   * Whether only the sources not retained from the previous state were compiled; the classes and
+   * top-level symbols of the retained sources are then not part of this result.
+   */
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  /** Returns the diagnostics of the compiler, as formatted by {@link ScalaReporter}. */
+  public String getOutput() {
+    return output;
+  }
+
+  /** @see ScalaCompiler#getTopLevelSymbols() */
+  public Map<String, String> getTopLevelSymbols() {
+    return topLevelSymbols;
+  }
+
+  public Map<String, byte[]> getClassBytes() {
+    return classBytes;
+  }
+
+  /** @see ScalaCompiler#getPhaseMillis() */
+  public Map<String, Long> getPhaseMillis() {
+    return phaseMillis;
+  }
+
+  void writeTo(DataOutputStream out) throws IOException {
+    out.writeBoolean(success);
+    out.writeBoolean(incremental);
+    writeString(out, output);
+    out.writeInt(topLevelSymbols.size());
+    for (Map.Entry<String, String> symbol : topLevelSymbols.entrySet()) {
+      writeString(out, symbol.getKey());
+      writeString(out, symbol.getValue());
+    }
+    out.writeInt(classBytes.size());
+    for (Map.Entry<String, byte[]> classEntry : classBytes.entrySet()) {
+      writeString(out, classEntry.getKey());
+      writeBytes(out, classEntry.getValue());
+    }
+    out.writeInt(phaseMillis.size());
+    for (Map.Entry<String, Long> phase : phaseMillis.entrySet()) {
+      writeString(out, phase.getKey());
+      out.writeLong(phase.getValue());
+    }
+    out.flush();
+  }
+
+  static ScalaCompileResult readFrom(DataInputStream in) throws IOException {
+    boolean success = in.readBoolean();
+    boolean incremental = in.readBoolean();
+    String output = readString(in);
+    int symbolCount = in.readInt();
+    Map<String, String> topLevelSymbols = Maps.newHashMapWithExpectedSize(symbolCount);
+    for (int i = 0; i < symbolCount; i++) {
+      topLevelSymbols.put(readString(in), readString(in));
+    }
+    int classCount = in.readInt();
+    Map<String, byte[]> classBytes = Maps.newHashMapWithExpectedSize(classCount);
+    for (int i = 0; i < classCount; i++) {
+      classBytes.put(readString(in), readBytes(in));
+    }
+    int phaseCount = in.readInt();
+    ImmutableMap.Builder<String, Long> phaseMillis = ImmutableMap.builder();
+    for (int i = 0; i < phaseCount; i++) {
+      phaseMillis.put(readString(in), in.readLong());
+    }
+    return new ScalaCompileResult(
+        success, incremental, output, topLevelSymbols, classBytes, phaseMillis.build());
+  }
+
+  static void writeString(DataOutputStream out, String value) throws IOException {
+    writeBytes(out, value.getBytes(UTF_8));
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    return new String(readBytes(in), UTF_8);
+  }
+
+  static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+    out.writeInt(value.length);
+    out.write(value);
+  }
+
+  static byte[] readBytes(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Invalid length " + length + " in Scala compile server message");
+    }
+    byte[] value = new byte[length];
+    in.readFully(value);
+    return value;
+  }
+}
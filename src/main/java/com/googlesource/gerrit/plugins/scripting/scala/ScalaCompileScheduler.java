@@ -0,0 +1,181 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admits the compilations of Scala plugins in arrival order, within a number of concurrent
+ * compilations and of the free heap.
+ *
+ * <p>The heap needed by a compilation is estimated from the size of its sources. A compilation
+ * waits as long as starting it would leave less than {@code compileMinFreeHeap} of free heap, once
+ * the estimates of the compilations already running are taken as well. It is always admitted when
+ * nothing else compiles, so that a large plugin is still compiled on a small heap.
+ */
+@Singleton
+public class ScalaCompileScheduler {
+  private static final Logger LOG = LoggerFactory.getLogger(ScalaCompileScheduler.class);
+
+  /** Heap of the compiler run itself: symbol table of the classpath, phases and output. */
+  static final long BASE_HEAP_ESTIMATE = 64 * 1024 * 1024;
+
+  /** Heap of the trees, types and symbols of the sources, per byte of source. */
+  static final long HEAP_ESTIMATE_PER_SOURCE_BYTE = 1024;
+
+  // The free heap also grows when a collection runs, without any compilation ending
+  private static final long RECHECK_MILLIS = 500;
+
+  private final int maxConcurrentCompilations;
+  private final long minFreeHeap;
+  private final LongSupplier freeHeap;
+  private final Lock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  private final Deque<Object> waiting = new ArrayDeque<>();
+  private int running;
+  private long reservedHeap;
+
+  /** A compilation allowed to run, until closed. */
+  public class Admission implements AutoCloseable {
+    private final long heapEstimate;
+    private final long waitNanos;
+    private boolean closed;
+
+    private Admission(long heapEstimate, long waitNanos) {
+      this.heapEstimate = heapEstimate;
+      this.waitNanos = waitNanos;
+    }
+
+    /** Returns the time the compilation waited before being admitted, in nanoseconds. */
+    public long getWaitNanos() {
+      return waitNanos;
+    }
+
+    @Override
+    public void close() {
+      lock.lock();
+      try {
+        if (!closed) {
+          closed = true;
+          running--;
+          reservedHeap -= heapEstimate;
+          changed.signalAll();
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  @Inject
+  public ScalaCompileScheduler(ScalaProviderConfig config) {
+    this(config, ScalaCompileScheduler::currentFreeHeap);
+  }
+
+  /** @param freeHeap supplier of the free heap, in bytes. */
+  ScalaCompileScheduler(ScalaProviderConfig config, LongSupplier freeHeap) {
+    this.maxConcurrentCompilations = config.getMaxConcurrentCompilations();
+    this.minFreeHeap = config.getCompileMinFreeHeap();
+    this.freeHeap = freeHeap;
+  }
+
+  /**
+   * Waits until a compilation of sources of the given size can start.
+   *
+   * @return the admission of the compilation, to be closed once it completed.
+   * @throws InterruptedIOException if interrupted while waiting.
+   */
+  public Admission admit(String pluginName, long sourceBytes) throws InterruptedIOException {
+    long heapEstimate = estimateHeap(sourceBytes);
+    long startNanos = System.nanoTime();
+    Object ticket = new Object();
+    boolean deferred = false;
+
+    lock.lock();
+    try {
+      waiting.addLast(ticket);
+      while (waiting.peekFirst() != ticket || !canStart(heapEstimate)) {
+        if (!deferred && waiting.peekFirst() == ticket) {
+          deferred = true;
+          LOG.info(
+              "Deferring compilation of Scala plugin "
+                  + pluginName
+                  + ", needing about "
+                  + (heapEstimate >> 20)
+                  + " MiB of heap, until "
+                  + (minFreeHeap >> 20)
+                  + " MiB of heap are left free");
+        }
+        try {
+          changed.await(RECHECK_MILLIS, MILLISECONDS);
+        } catch (InterruptedException e) {
+          waiting.remove(ticket);
+          changed.signalAll();
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException(
+              "Interrupted while waiting to compile Scala plugin " + pluginName);
+        }
+      }
+
+      waiting.removeFirst();
+      running++;
+      reservedHeap += heapEstimate;
+      // The next compilation in line may fit as well
+      changed.signalAll();
+      return new Admission(heapEstimate, System.nanoTime() - startNanos);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Returns the number of compilations waiting to be admitted. */
+  public int getQueueDepth() {
+    lock.lock();
+    try {
+      return waiting.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  static long estimateHeap(long sourceBytes) {
+    return BASE_HEAP_ESTIMATE + sourceBytes * HEAP_ESTIMATE_PER_SOURCE_BYTE;
+  }
+
+  private boolean canStart(long heapEstimate) {
+    if (running == 0) {
+      return true;
+    }
+    // The running compilations may not have allocated their heap yet
+    return running < maxConcurrentCompilations
+        && freeHeap.getAsLong() - reservedHeap - heapEstimate >= minFreeHeap;
+  }
+
+  private static long currentFreeHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+  }
+}
@@ -0,0 +1,207 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.gerrit.server.config.PluginConfig;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import org.eclipse.jgit.lib.Config;
+import scala.reflect.internal.util.BatchSourceFile;
+import scala.reflect.internal.util.SourceFile;
+import scala.reflect.io.VirtualFile;
+
+/**
+ * Compiles Scala plugins in a JVM of its own, so that the compiler heap and its garbage collections
+ * stay out of Gerrit's JVM.
+ *
+ * <p>Started by {@link ScalaCompileServerClient} with the classpath of the provider. It listens on
+ * the loopback interface, prints {@code port <n>} on its standard output once ready, and keeps a
+ * pool of warm compilers. Each connection carries one compilation: the protocol version, the token
+ * received in the {@value #TOKEN_ENV} environment variable, the id of the previous state of the
+ * plugin and of its new state, the paths of the sources retained from the previous state, then the
+ * path and content of each source; the answer is a {@link ScalaCompileResult}. When a pooled
+ * compiler still has the previous state, only the sources not retained are compiled, as in {@link
+ * ScalaPluginScriptEngine}. The server exits when its standard input is closed, that is when Gerrit
+ * stops.
+ */
+public class ScalaCompileServer {
+  static final int PROTOCOL_VERSION = 2;
+  static final String TOKEN_ENV = "SCALA_COMPILE_SERVER_TOKEN";
+  static final String READY_PREFIX = "port ";
+
+  private final ScalaCompilerPool compilerPool;
+  private final byte[] token;
+
+  /**
+   * Arguments: the number of compilers, the number of runs after which one is replaced and whether
+   * to record the time spent in each compiler phase.
+   */
+  public static void main(String[] args) throws IOException {
+    String token = System.getenv(TOKEN_ENV);
+    if (args.length != 3 || token == null) {
+      System.err.println(
+          "Usage: "
+              + TOKEN_ENV
+              + "=<token> "
+              + ScalaCompileServer.class.getName()
+              + " <compilers> <max runs per compiler> <phase metrics>");
+      System.exit(2);
+    }
+
+    int poolSize = Integer.parseInt(args[0]);
+    Config config = new Config();
+    config.setInt("plugin", "scala-provider", "compilerPoolSize", poolSize);
+    config.setInt("plugin", "scala-provider", "compilerMaxRuns", Integer.parseInt(args[1]));
+    config.setBoolean("plugin", "scala-provider", "phaseMetrics", Boolean.parseBoolean(args[2]));
+    ScalaCompilerPool compilerPool =
+        new ScalaCompilerPool(
+            new ScalaProviderConfig(PluginConfig.createFromGerritConfig("scala-provider", config)));
+    new ScalaCompileServer(compilerPool, token).run(poolSize);
+  }
+
+  ScalaCompileServer(ScalaCompilerPool compilerPool, String token) {
+    this.compilerPool = compilerPool;
+    this.token = token.getBytes(UTF_8);
+  }
+
+  private void run(int poolSize) throws IOException {
+    Thread parentWatcher =
+        new Thread(
+            () -> {
+              try {
+                while (System.in.read() >= 0) {
+                  // Only waiting for the end of the stream
+                }
+              } catch (IOException e) {
+                // Gone as well
+              }
+              System.exit(0);
+            },
+            "ScalaCompileServer-parent");
+    parentWatcher.setDaemon(true);
+    parentWatcher.start();
+
+    ExecutorService workers = Executors.newFixedThreadPool(poolSize);
+    try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      System.out.println(READY_PREFIX + serverSocket.getLocalPort());
+      System.out.flush();
+      try {
+        compilerPool.start();
+      } catch (Exception e) {
+        // Errors of the Scala compiler are not all runtime exceptions
+        System.err.println("Cannot warm up Scala compiler: " + e);
+      }
+      while (true) {
+        Socket socket = serverSocket.accept();
+        workers.execute(() -> serve(socket));
+      }
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+
+  private void serve(Socket socket) {
+    try (Socket s = socket;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+        DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+      if (in.readInt() != PROTOCOL_VERSION || in.readInt() != token.length) {
+        return;
+      }
+      byte[] receivedToken = new byte[token.length];
+      in.readFully(receivedToken);
+      if (!MessageDigest.isEqual(token, receivedToken)) {
+        return;
+      }
+
+      String previousStateId = Strings.emptyToNull(ScalaCompileResult.readString(in));
+      String stateId = Strings.emptyToNull(ScalaCompileResult.readString(in));
+      int retainedCount = in.readInt();
+      Set<String> retainedSources = Sets.newHashSetWithExpectedSize(retainedCount);
+      for (int i = 0; i < retainedCount; i++) {
+        retainedSources.add(ScalaCompileResult.readString(in));
+      }
+      int sourceCount = in.readInt();
+      List<SourceFile> sources = Lists.newArrayListWithCapacity(sourceCount);
+      for (int i = 0; i < sourceCount; i++) {
+        String path = ScalaCompileResult.readString(in);
+        char[] content = ScalaCompileResult.readString(in).toCharArray();
+        sources.add(new BatchSourceFile(new VirtualFile(path), content));
+      }
+      compile(sources, previousStateId, retainedSources, stateId).writeTo(out);
+    } catch (Exception e) {
+      System.err.println("Cannot serve Scala compilation: " + e);
+    }
+  }
+
+  ScalaCompileResult compile(
+      List<SourceFile> sources, String previousStateId, Set<String> retainedSources, String stateId)
+      throws IOException {
+    ScalaCompiler compiler = compilerPool.borrow(previousStateId);
+    try {
+      ScalaPluginScriptEngine.ScalaClassLoader output =
+          new ScalaPluginScriptEngine.ScalaClassLoader();
+      boolean incremental =
+          previousStateId != null && previousStateId.equals(compiler.getStateId());
+      boolean success = false;
+      if (incremental) {
+        List<SourceFile> changedSources =
+            sources.stream()
+                .filter(source -> !retainedSources.contains(source.path()))
+                .collect(Collectors.toList());
+        if (changedSources.isEmpty()) {
+          compiler.setStateId(stateId);
+          return new ScalaCompileResult(
+              true, true, "", ImmutableMap.of(), ImmutableMap.of(), ImmutableMap.of());
+        }
+        success = compiler.compile(changedSources, retainedSources, output.getVirtualDirectory());
+        if (!success) {
+          output.getVirtualDirectory().clear();
+          incremental = false;
+        }
+      }
+      if (!incremental) {
+        success = compiler.compile(sources, output.getVirtualDirectory());
+      }
+      compiler.setStateId(success ? stateId : null);
+      return new ScalaCompileResult(
+          success,
+          incremental,
+          compiler.getReporter().getOutput(),
+          success ? compiler.getTopLevelSymbols() : ImmutableMap.of(),
+          success ? output.getAllClassBytes() : ImmutableMap.of(),
+          ImmutableMap.copyOf(compiler.getPhaseMillis()));
+    } finally {
+      compilerPool.release(compiler);
+    }
+  }
+}
@@ -0,0 +1,245 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.BaseEncoding;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the {@link ScalaCompileServer} next to Gerrit and sends it the compilations of Scala
+ * plugins, when enabled.
+ *
+ * <p>When the server cannot be started or reached, {@link #compile} returns nothing and the caller
+ * compiles in Gerrit's JVM; a server that died is started again at most once a minute.
+ */
+@Singleton
+public class ScalaCompileServerClient implements LifecycleListener {
+  private static final Logger LOG = LoggerFactory.getLogger(ScalaCompileServerClient.class);
+  private static final long RESTART_DELAY_NANOS = TimeUnit.MINUTES.toNanos(1);
+  private static final int COMPILE_TIMEOUT_MILLIS = (int) TimeUnit.MINUTES.toMillis(10);
+
+  private final boolean enabled;
+  private final String heapSize;
+  private final int poolSize;
+  private final int maxRuns;
+  private final boolean phaseMetrics;
+  private Process process;
+  private int port;
+  private byte[] token;
+  private long lastStartFailureNanos;
+
+  @Inject
+  public ScalaCompileServerClient(ScalaProviderConfig config) {
+    this.enabled = config.isCompileServerEnabled();
+    this.heapSize = config.getCompileServerHeapSize();
+    this.poolSize = config.getCompilerPoolSize();
+    this.maxRuns = config.getCompilerMaxRuns();
+    this.phaseMetrics = config.isPhaseMetricsEnabled();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override
+  public void start() {
+    if (enabled) {
+      ensureRunning();
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (process != null) {
+      process.destroy();
+      process = null;
+    }
+  }
+
+  /**
+   * Compiles the given sources with the compile server.
+   *
+   * @return the result of the compilation, or nothing when the server is disabled or unavailable.
+   * @throws IOException if a source cannot be read.
+   */
+  public Optional<ScalaCompileResult> compile(List<Path> scalaFiles) throws IOException {
+    return compile(scalaFiles, null, ImmutableSet.of(), null);
+  }
+
+  /**
+   * Compiles the sources of a directory plugin with the compile server. When a compiler of the
+   * server still has the previous state of the plugin, only the sources not retained from it are
+   * compiled and the result is {@link ScalaCompileResult#isIncremental() incremental}.
+   *
+   * @param previousStateId id of the previous state of the plugin, or null.
+   * @param retainedSources paths of the sources unchanged since the previous state.
+   * @param stateId id of the new state of the plugin, or null when it is not kept.
+   * @return the result of the compilation, or nothing when the server is disabled or unavailable.
+   * @throws IOException if a source cannot be read.
+   */
+  public Optional<ScalaCompileResult> compile(
+      List<Path> scalaFiles, String previousStateId, Set<String> retainedSources, String stateId)
+      throws IOException {
+    if (!enabled) {
+      return Optional.empty();
+    }
+
+    List<byte[]> contents = Lists.newArrayListWithCapacity(scalaFiles.size());
+    for (Path scalaFile : scalaFiles) {
+      contents.add(Files.readAllBytes(scalaFile));
+    }
+
+    Endpoint endpoint = ensureRunning();
+    if (endpoint == null) {
+      return Optional.empty();
+    }
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), endpoint.port)) {
+      socket.setSoTimeout(COMPILE_TIMEOUT_MILLIS);
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      out.writeInt(ScalaCompileServer.PROTOCOL_VERSION);
+      ScalaCompileResult.writeBytes(out, endpoint.token);
+      ScalaCompileResult.writeString(out, Strings.nullToEmpty(previousStateId));
+      ScalaCompileResult.writeString(out, Strings.nullToEmpty(stateId));
+      out.writeInt(retainedSources.size());
+      for (String retainedSource : retainedSources) {
+        ScalaCompileResult.writeString(out, retainedSource);
+      }
+      out.writeInt(scalaFiles.size());
+      for (int i = 0; i < scalaFiles.size(); i++) {
+        ScalaCompileResult.writeString(out, scalaFiles.get(i).toString());
+        ScalaCompileResult.writeBytes(out, contents.get(i));
+      }
+      out.flush();
+      return Optional.of(
+          ScalaCompileResult.readFrom(
+              new DataInputStream(new BufferedInputStream(socket.getInputStream()))));
+    } catch (IOException e) {
+      LOG.warn("Cannot compile " + scalaFiles + " with the Scala compile server: " + e);
+      return Optional.empty();
+    }
+  }
+
+  private static class Endpoint {
+    final int port;
+    final byte[] token;
+
+    Endpoint(int port, byte[] token) {
+      this.port = port;
+      this.token = token;
+    }
+  }
+
+  private synchronized Endpoint ensureRunning() {
+    if (process != null && process.isAlive()) {
+      return new Endpoint(port, token);
+    }
+    if (lastStartFailureNanos != 0
+        && System.nanoTime() - lastStartFailureNanos < RESTART_DELAY_NANOS) {
+      return null;
+    }
+
+    try {
+      startServer();
+      lastStartFailureNanos = 0;
+      return new Endpoint(port, token);
+    } catch (IOException e) {
+      LOG.warn("Cannot start the Scala compile server, compiling in Gerrit's JVM", e);
+      stop();
+      lastStartFailureNanos = System.nanoTime();
+      return null;
+    }
+  }
+
+  private void startServer() throws IOException {
+    byte[] randomBytes = new byte[32];
+    new SecureRandom().nextBytes(randomBytes);
+    String newToken = BaseEncoding.base16().lowerCase().encode(randomBytes);
+
+    List<String> command = Lists.newArrayList();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    if (heapSize != null) {
+      command.add("-Xmx" + heapSize);
+    }
+    command.add("-cp");
+    command.add(ScalaSettings.classPath());
+    command.add(ScalaCompileServer.class.getName());
+    command.add(Integer.toString(poolSize));
+    command.add(Integer.toString(maxRuns));
+    command.add(Boolean.toString(phaseMetrics));
+    ProcessBuilder processBuilder =
+        new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT);
+    processBuilder.environment().put(ScalaCompileServer.TOKEN_ENV, newToken);
+
+    process = processBuilder.start();
+    // Standard input is left open: the server exits when it is closed with Gerrit's JVM
+    BufferedReader serverOutput =
+        new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8));
+    String ready = serverOutput.readLine();
+    if (ready == null || !ready.startsWith(ScalaCompileServer.READY_PREFIX)) {
+      throw new IOException("Unexpected start of Scala compile server: " + ready);
+    }
+    port = Integer.parseInt(ready.substring(ScalaCompileServer.READY_PREFIX.length()).trim());
+    token = newToken.getBytes(UTF_8);
+    forwardOutput(serverOutput);
+    LOG.info("Scala compile server started on port " + port);
+  }
+
+  /**
+   * Keeps reading the standard output of the server into the log, so that the server never blocks
+   * on a full pipe.
+   */
+  private static void forwardOutput(BufferedReader serverOutput) {
+    Thread forwarder =
+        new Thread(
+            () -> {
+              try (BufferedReader output = serverOutput) {
+                for (String line = output.readLine(); line != null; line = output.readLine()) {
+                  LOG.info("Scala compile server: " + line);
+                }
+              } catch (IOException e) {
+                // The server is gone
+              }
+            },
+            "ScalaCompileServer-output");
+    forwarder.setDaemon(true);
+    forwarder.start();
+  }
+}
@@ -0,0 +1,196 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static scala.collection.JavaConversions.asScalaBuffer;
+import static scala.collection.JavaConversions.mapAsJavaMap;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import scala.reflect.internal.Phase;
+import scala.reflect.internal.Symbols.Symbol;
+import scala.reflect.internal.Symbols.TypeHistory;
+import scala.reflect.internal.util.SourceFile;
+import scala.reflect.io.AbstractFile;
+import scala.reflect.io.VirtualDirectory;
+import scala.tools.nsc.Global;
+import scala.tools.nsc.Global.Run;
+
+/**
+ * A reusable Scala compiler instance.
+ *
+ * <p>The underlying {@link Global} keeps its symbol table and JIT-compiled code across runs; each
+ * run writes its classes to the output directory given by the caller. The runs are usually for
+ * unrelated plugins, so the top-level classes and objects compiled by a run are removed from the
+ * symbol table before the next one: a plugin must not compile against the classes of another one,
+ * which its class loader cannot see.
+ */
+public class ScalaCompiler {
+  private final ScalaSettings settings;
+  private final ScalaReporter reporter;
+  private final Global globalEngine;
+  private int runs;
+  private Map<String, String> topLevelSymbols;
+  private final Map<Symbol, String> compiledSymbols = Maps.newHashMap();
+  private String stateId;
+  private final Map<String, Long> phaseMillis = Maps.newLinkedHashMap();
+
+  public ScalaCompiler() {
+    this(false);
+  }
+
+  /**
+   * @param recordPhaseTimes whether to record the time spent in each phase, see {@link
+   *     #getPhaseMillis}. The compiler then reports its progress verbosely, which costs a message
+   *     for every class file it loads.
+   */
+  public ScalaCompiler(boolean recordPhaseTimes) {
+    settings = new ScalaSettings(recordPhaseTimes);
+    reporter = new ScalaReporter();
+    if (recordPhaseTimes) {
+      reporter.setProgressListener(this::recordPhaseTime);
+    }
+    globalEngine = new Global(settings.getSettings(), reporter);
+  }
+
+  public boolean compile(List<SourceFile> sourceFiles, VirtualDirectory outputDirectory) {
+    return compile(sourceFiles, ImmutableSet.of(), outputDirectory);
+  }
+
+  /**
+   * Compiles the given sources against the top-level classes and objects that the previous runs of
+   * this compiler compiled from the retained sources, which are kept in the symbol table. The
+   * symbols of the other sources of the previous runs are forgotten.
+   *
+   * @param retainedSources paths of the sources of the previous runs whose classes are still valid.
+   */
+  public boolean compile(
+      List<SourceFile> sourceFiles, Set<String> retainedSources, VirtualDirectory outputDirectory) {
+    settings.getSettings().outputDirs().setSingleOutput(outputDirectory);
+    reporter.reset();
+    runs++;
+    phaseMillis.clear();
+    stateId = null;
+    forgetCompiledSymbols(retainedSources);
+    Run run = globalEngine.new Run();
+    Map<Symbol, String> runSymbols = ImmutableMap.of();
+    try {
+      run.compileSources(asScalaBuffer(sourceFiles).toList());
+    } finally {
+      runSymbols = sourcePathsOf(run);
+      compiledSymbols.putAll(runSymbols);
+    }
+
+    topLevelSymbols = Maps.newHashMap();
+    for (Map.Entry<Symbol, String> symbol : runSymbols.entrySet()) {
+      topLevelSymbols.put(symbol.getKey().fullName(), symbol.getValue());
+    }
+    return !reporter.hasErrors();
+  }
+
+  private static Map<Symbol, String> sourcePathsOf(Run run) {
+    Map<Symbol, AbstractFile> sources = mapAsJavaMap(run.symSource());
+    Map<Symbol, String> sourcePaths = Maps.newHashMap();
+    for (Map.Entry<Symbol, AbstractFile> symbol : sources.entrySet()) {
+      AbstractFile source = symbol.getValue();
+      if (source == null) {
+        // Companion object synthesized for a case class, in the file of the class
+        source = sources.get(symbol.getKey().companionSymbol());
+      }
+      if (source != null) {
+        sourcePaths.put(symbol.getKey(), source.path());
+      }
+    }
+    return sourcePaths;
+  }
+
+  // Top-level classes and objects are only reachable through the declarations of their package,
+  // which later phases like flatten copy: they are removed from the declarations of every phase
+  private void forgetCompiledSymbols(Set<String> retainedSources) {
+    Iterator<Map.Entry<Symbol, String>> symbols = compiledSymbols.entrySet().iterator();
+    while (symbols.hasNext()) {
+      Map.Entry<Symbol, String> symbol = symbols.next();
+      if (retainedSources.contains(symbol.getValue())) {
+        continue;
+      }
+      for (TypeHistory history = symbol.getKey().owner().scala$reflect$internal$Symbols$$infos();
+          history != null;
+          history = history.prev()) {
+        history.info().decls().unlink(symbol.getKey());
+      }
+      symbols.remove();
+    }
+  }
+
+  /**
+   * Returns the full name of each top-level class or object compiled by the last run, mapped to the
+   * path of its source file.
+   */
+  public Map<String, String> getTopLevelSymbols() {
+    return topLevelSymbols;
+  }
+
+  /**
+   * Returns the time spent by the last run in each compiler phase, in milliseconds; empty unless
+   * the compiler records phase times.
+   */
+  public Map<String, Long> getPhaseMillis() {
+    return phaseMillis;
+  }
+
+  // At the end of each phase, the compiler reports "[<phase description> in <millis>ms]"
+  private void recordPhaseTime(String progressMessage) {
+    if (globalEngine == null) {
+      // Progress of the initialization of the compiler itself
+      return;
+    }
+    Phase phase = globalEngine.globalPhase();
+    String prefix = "[" + phase.description() + " in ";
+    if (progressMessage.startsWith(prefix) && progressMessage.endsWith("ms]")) {
+      try {
+        long millis =
+            Long.parseLong(
+                progressMessage.substring(prefix.length(), progressMessage.length() - 3));
+        phaseMillis.merge(phase.name(), millis, Long::sum);
+      } catch (NumberFormatException e) {
+        // Not a phase timing
+      }
+    }
+  }
+
+  /**
+   * Returns the identifier of the sources whose classes this compiler keeps from its previous runs,
+   * as set by the caller once a run succeeded, or null.
+   */
+  public String getStateId() {
+    return stateId;
+  }
+
+  public void setStateId(String stateId) {
+    this.stateId = stateId;
+  }
+
+  public ScalaReporter getReporter() {
+    return reporter;
+  }
+
+  public int getRuns() {
+    return runs;
+  }
+}
@@ -0,0 +1,150 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.Option;
+import scala.Predef;
+import scala.reflect.internal.util.BatchSourceFile;
+import scala.reflect.internal.util.SourceFile;
+import scala.reflect.io.VirtualDirectory;
+
+/**
+ * Bounded pool of long-lived {@link ScalaCompiler} instances.
+ *
+ * <p>Compilers are handed out for one run at a time. A compiler is dropped instead of being
+ * returned to the pool when its last run failed, as the symbol table may then be inconsistent, or
+ * when it reached the configured number of runs, so that symbols of old plugin versions do not
+ * accumulate forever.
+ */
+@Singleton
+public class ScalaCompilerPool implements LifecycleListener {
+  private static final Logger LOG = LoggerFactory.getLogger(ScalaCompilerPool.class);
+  private static final String WARM_UP_SCRIPT =
+      "object ScalaProviderWarmUp { def apply(): Int = List(1, 2, 3).map(_ * 2).sum }";
+
+  private final BlockingDeque<ScalaCompiler> idleCompilers;
+  private final Semaphore permits;
+  private final int maxRuns;
+  private final int warmUpCompilers;
+  private final boolean recordPhaseTimes;
+  private final boolean compileServer;
+
+  @Inject
+  public ScalaCompilerPool(ScalaProviderConfig config) {
+    this.idleCompilers = new LinkedBlockingDeque<>();
+    this.permits = new Semaphore(config.getCompilerPoolSize(), true);
+    this.maxRuns = config.getCompilerMaxRuns();
+    this.warmUpCompilers = Math.min(config.getCompilerPoolWarmUp(), config.getCompilerPoolSize());
+    this.recordPhaseTimes = config.isPhaseMetricsEnabled();
+    this.compileServer = config.isCompileServerEnabled();
+  }
+
+  @Override
+  public void start() {
+    if (compileServer) {
+      // Plugins compile in the compile server, which warms up a pool of its own; compilers are
+      // only created in Gerrit's JVM when the server is unavailable
+      return;
+    }
+    long startTime = System.currentTimeMillis();
+    for (int i = 0; i < warmUpCompilers; i++) {
+      ScalaCompiler compiler = new ScalaCompiler(recordPhaseTimes);
+      SourceFile warmUpSource =
+          new BatchSourceFile("(warm-up)", Predef.wrapCharArray(WARM_UP_SCRIPT.toCharArray()));
+      if (compiler.compile(
+          ImmutableList.of(warmUpSource),
+          new VirtualDirectory("(warm-up)", Option.apply((VirtualDirectory) null)))) {
+        idleCompilers.offer(compiler);
+      } else {
+        LOG.warn("Cannot warm up Scala compiler: " + compiler.getReporter().getOutput());
+      }
+    }
+    LOG.info(
+        "Warmed up "
+            + idleCompilers.size()
+            + " Scala compiler(s) in "
+            + (System.currentTimeMillis() - startTime)
+            + " ms");
+  }
+
+  @Override
+  public void stop() {
+    idleCompilers.clear();
+  }
+
+  public ScalaCompiler borrow() throws InterruptedIOException {
+    return borrow(null);
+  }
+
+  /**
+   * Borrows a compiler, preferably one keeping the classes of the given state from its previous
+   * runs, as told by {@link ScalaCompiler#getStateId()}.
+   */
+  public ScalaCompiler borrow(String stateId) throws InterruptedIOException {
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a Scala compiler");
+    }
+
+    ScalaCompiler compiler = stateId != null ? pollIdleCompiler(stateId) : null;
+    if (compiler == null) {
+      compiler = idleCompilers.pollFirst();
+    }
+    if (compiler == null) {
+      try {
+        compiler = new ScalaCompiler(recordPhaseTimes);
+      } catch (RuntimeException | Error e) {
+        permits.release();
+        throw e;
+      }
+    }
+    return compiler;
+  }
+
+  private ScalaCompiler pollIdleCompiler(String stateId) {
+    for (ScalaCompiler compiler : idleCompilers) {
+      if (stateId.equals(compiler.getStateId()) && idleCompilers.remove(compiler)) {
+        return compiler;
+      }
+    }
+    return null;
+  }
+
+  public void release(ScalaCompiler compiler) {
+    try {
+      if (!compiler.getReporter().hasErrors() && compiler.getRuns() < maxRuns) {
+        idleCompilers.offerFirst(compiler);
+      }
+    } finally {
+      permits.release();
+    }
+  }
+
+  /** Gives back a borrowed compiler without keeping it, releasing its symbol table and trees. */
+  public void discard(ScalaCompiler compiler) {
+    permits.release();
+  }
+}
@@ -0,0 +1,96 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Joiner;
+import com.google.common.io.ByteStreams;
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.sshd.CommandMetaData;
+import com.google.gerrit.sshd.SshCommand;
+import com.google.inject.Inject;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
+
+@RequiresCapability(GlobalCapability.ADMINISTRATE_SERVER)
+@CommandMetaData(name = "eval", description = "Evaluate a Scala snippet against Gerrit's API")
+public final class ScalaEvalCommand extends SshCommand {
+  private final ScalaInterpreterPool interpreterPool;
+  private final long maxTimeoutMillis;
+  private final long maxAllocation;
+
+  @Option(
+      name = "--timeout",
+      metaVar = "TIMEOUT",
+      usage = "time after which the evaluation is abandoned, like 5s; at most evalTimeout")
+  private String timeout;
+
+  @Argument(
+      index = 0,
+      multiValued = true,
+      metaVar = "CODE",
+      usage = "snippet, read from stdin if omitted")
+  private List<String> code;
+
+  @Inject
+  ScalaEvalCommand(ScalaInterpreterPool interpreterPool, ScalaProviderConfig config) {
+    this.interpreterPool = interpreterPool;
+    this.maxTimeoutMillis = config.getEvalTimeoutMillis();
+    this.maxAllocation = config.getEvalMaxAllocation();
+  }
+
+  @Override
+  protected void run() throws UnloggedFailure, Exception {
+    if (!interpreterPool.isEnabled()) {
+      throw die("Scala evaluation is disabled, see evalPoolSize");
+    }
+    long timeoutMillis = maxTimeoutMillis;
+    if (timeout != null) {
+      try {
+        timeoutMillis =
+            Math.min(
+                maxTimeoutMillis,
+                ConfigUtil.getTimeUnit(timeout, maxTimeoutMillis, TimeUnit.MILLISECONDS));
+      } catch (IllegalArgumentException e) {
+        throw die("Invalid timeout " + timeout);
+      }
+    }
+    String snippet =
+        code == null || code.isEmpty()
+            ? new String(ByteStreams.toByteArray(in), UTF_8)
+            : Joiner.on(' ').join(code);
+
+    stdout.flush();
+    ScalaInterpreterPool.Outcome outcome =
+        interpreterPool.eval(snippet, out, timeoutMillis, maxAllocation);
+    out.flush();
+    switch (outcome) {
+      case SUCCESS:
+        return;
+      case ERROR:
+        throw die("Scala snippet failed");
+      case TIMEOUT:
+        throw die("Scala snippet did not complete within " + timeoutMillis + " ms");
+      case MEMORY_LIMIT:
+        throw die("Scala snippet allocated more than " + maxAllocation + " bytes");
+      case NO_SESSION:
+        throw die("No Scala interpreter session became free within " + timeoutMillis + " ms");
+    }
+  }
+}
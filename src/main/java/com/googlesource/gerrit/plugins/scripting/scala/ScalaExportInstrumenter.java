@@ -0,0 +1,239 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.Set;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Weaves the recording of the invocations of the entry points of an exported class of a Scala
+ * plugin: {@code run} of SSH commands, {@code service} and the {@code doXxx} methods of servlets,
+ * and the public {@code onXxx} callbacks of listeners.
+ *
+ * <p>Each entry point is renamed to a private method, and replaced by a method with the original
+ * signature that calls it between {@link ScalaExportProbe#start} and {@link
+ * ScalaExportProbe#succeeded} or {@link ScalaExportProbe#failed}. The probe is read from a static
+ * field added to the class, to be set once the class is defined.
+ */
+class ScalaExportInstrumenter {
+  static final String PROBE_FIELD = "scalaProvider$exportProbe";
+  private static final String ORIGINAL_SUFFIX = "$scalaProvider$original";
+  private static final String PROBE_TYPE = Type.getInternalName(ScalaExportProbe.class);
+  private static final String PROBE_DESCRIPTOR = Type.getDescriptor(ScalaExportProbe.class);
+  private static final String THROWABLE_TYPE = Type.getInternalName(Throwable.class);
+  private static final Set<String> SERVLET_METHODS =
+      ImmutableSet.of(
+          "service", "doGet", "doHead", "doPost", "doPut", "doDelete", "doOptions", "doTrace");
+  private static final int NOT_INSTRUMENTED =
+      Opcodes.ACC_STATIC
+          | Opcodes.ACC_ABSTRACT
+          | Opcodes.ACC_NATIVE
+          | Opcodes.ACC_PRIVATE
+          | Opcodes.ACC_SYNTHETIC
+          | Opcodes.ACC_BRIDGE;
+
+  /** Returns the instrumented bytecode of a class, or null when it has no entry point. */
+  static byte[] instrument(byte[] classBytes) {
+    ClassReader reader = new ClassReader(classBytes);
+    ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+    Weaver weaver = new Weaver(writer);
+    reader.accept(weaver, 0);
+    return weaver.entryPoints.isEmpty() ? null : writer.toByteArray();
+  }
+
+  static boolean isEntryPoint(int access, String name, String descriptor) {
+    if ((access & NOT_INSTRUMENTED) != 0) {
+      return false;
+    }
+    if (name.equals("run")) {
+      return descriptor.equals("()V");
+    }
+    if (SERVLET_METHODS.contains(name)) {
+      return Type.getArgumentTypes(descriptor).length == 2
+          && Type.getReturnType(descriptor) == Type.VOID_TYPE;
+    }
+    return (access & Opcodes.ACC_PUBLIC) != 0
+        && name.length() > 2
+        && name.startsWith("on")
+        && Character.isUpperCase(name.charAt(2));
+  }
+
+  private static class EntryPoint {
+    final int access;
+    final String name;
+    final String descriptor;
+    final String signature;
+    final String[] exceptions;
+
+    EntryPoint(int access, String name, String descriptor, String signature, String[] exceptions) {
+      this.access = access;
+      this.name = name;
+      this.descriptor = descriptor;
+      this.signature = signature;
+      this.exceptions = exceptions;
+    }
+  }
+
+  private static class Weaver extends ClassVisitor {
+    final List<EntryPoint> entryPoints = Lists.newArrayList();
+    private String owner;
+    private int version;
+
+    Weaver(ClassVisitor classVisitor) {
+      super(Opcodes.ASM7, classVisitor);
+    }
+
+    @Override
+    public void visit(
+        int version,
+        int access,
+        String name,
+        String signature,
+        String superName,
+        String[] interfaces) {
+      this.owner = name;
+      this.version = version;
+      super.visit(version, access, name, signature, superName, interfaces);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        int access, String name, String descriptor, String signature, String[] exceptions) {
+      if (!isEntryPoint(access, name, descriptor)) {
+        return super.visitMethod(access, name, descriptor, signature, exceptions);
+      }
+      entryPoints.add(new EntryPoint(access, name, descriptor, signature, exceptions));
+      int originalAccess =
+          (access & ~(Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED))
+              | Opcodes.ACC_PRIVATE
+              | Opcodes.ACC_SYNTHETIC;
+      return super.visitMethod(
+          originalAccess, name + ORIGINAL_SUFFIX, descriptor, signature, exceptions);
+    }
+
+    @Override
+    public void visitEnd() {
+      if (!entryPoints.isEmpty()) {
+        super.visitField(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC,
+                PROBE_FIELD,
+                PROBE_DESCRIPTOR,
+                null,
+                null)
+            .visitEnd();
+        for (EntryPoint entryPoint : entryPoints) {
+          addProbedMethod(entryPoint);
+        }
+      }
+      super.visitEnd();
+    }
+
+    private void addProbedMethod(EntryPoint entryPoint) {
+      MethodVisitor mv =
+          super.visitMethod(
+              entryPoint.access & ~Opcodes.ACC_SYNCHRONIZED,
+              entryPoint.name,
+              entryPoint.descriptor,
+              entryPoint.signature,
+              entryPoint.exceptions);
+      Type[] argumentTypes = Type.getArgumentTypes(entryPoint.descriptor);
+      Type returnType = Type.getReturnType(entryPoint.descriptor);
+      List<Object> frameLocals = Lists.newArrayList();
+      frameLocals.add(owner);
+      int startLocal = 1;
+      for (Type argumentType : argumentTypes) {
+        frameLocals.add(frameTypeOf(argumentType));
+        startLocal += argumentType.getSize();
+      }
+      frameLocals.add(Opcodes.LONG);
+      int throwableLocal = startLocal + 2;
+
+      Label start = new Label();
+      Label end = new Label();
+      Label handler = new Label();
+      mv.visitCode();
+      mv.visitTryCatchBlock(start, end, handler, null);
+      mv.visitFieldInsn(Opcodes.GETSTATIC, owner, PROBE_FIELD, PROBE_DESCRIPTOR);
+      mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, PROBE_TYPE, "start", "()J", false);
+      mv.visitVarInsn(Opcodes.LSTORE, startLocal);
+
+      mv.visitLabel(start);
+      mv.visitVarInsn(Opcodes.ALOAD, 0);
+      int local = 1;
+      for (Type argumentType : argumentTypes) {
+        mv.visitVarInsn(argumentType.getOpcode(Opcodes.ILOAD), local);
+        local += argumentType.getSize();
+      }
+      mv.visitMethodInsn(
+          Opcodes.INVOKESPECIAL,
+          owner,
+          entryPoint.name + ORIGINAL_SUFFIX,
+          entryPoint.descriptor,
+          false);
+      mv.visitLabel(end);
+      mv.visitFieldInsn(Opcodes.GETSTATIC, owner, PROBE_FIELD, PROBE_DESCRIPTOR);
+      mv.visitVarInsn(Opcodes.LLOAD, startLocal);
+      mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, PROBE_TYPE, "succeeded", "(J)V", false);
+      mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+
+      mv.visitLabel(handler);
+      if ((version & 0xFFFF) >= Opcodes.V1_6) {
+        mv.visitFrame(
+            Opcodes.F_NEW,
+            frameLocals.size(),
+            frameLocals.toArray(),
+            1,
+            new Object[] {THROWABLE_TYPE});
+      }
+      mv.visitVarInsn(Opcodes.ASTORE, throwableLocal);
+      mv.visitFieldInsn(Opcodes.GETSTATIC, owner, PROBE_FIELD, PROBE_DESCRIPTOR);
+      mv.visitVarInsn(Opcodes.LLOAD, startLocal);
+      mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, PROBE_TYPE, "failed", "(J)V", false);
+      mv.visitVarInsn(Opcodes.ALOAD, throwableLocal);
+      mv.visitInsn(Opcodes.ATHROW);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+
+    private static Object frameTypeOf(Type type) {
+      switch (type.getSort()) {
+        case Type.BOOLEAN:
+        case Type.CHAR:
+        case Type.BYTE:
+        case Type.SHORT:
+        case Type.INT:
+          return Opcodes.INTEGER;
+        case Type.FLOAT:
+          return Opcodes.FLOAT;
+        case Type.LONG:
+          return Opcodes.LONG;
+        case Type.DOUBLE:
+          return Opcodes.DOUBLE;
+        case Type.ARRAY:
+          return type.getDescriptor();
+        default:
+          return type.getInternalName();
+      }
+    }
+  }
+}
@@ -0,0 +1,52 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Records the invocations of the entry points of an exported class of a Scala plugin.
+ *
+ * <p>Called by the code woven by {@link ScalaExportInstrumenter}, hence public.
+ */
+public class ScalaExportProbe {
+  private final ScalaProviderMetrics metrics;
+  private final String pluginName;
+  private final String exportName;
+
+  ScalaExportProbe(ScalaProviderMetrics metrics, String pluginName, String exportName) {
+    this.metrics = metrics;
+    this.pluginName = pluginName;
+    this.exportName = exportName;
+  }
+
+  public long start() {
+    return System.nanoTime();
+  }
+
+  public void succeeded(long startNanos) {
+    record(startNanos);
+  }
+
+  public void failed(long startNanos) {
+    record(startNanos);
+    metrics.exportErrors.increment(pluginName, exportName);
+  }
+
+  private void record(long startNanos) {
+    metrics.exportCalls.increment(pluginName, exportName);
+    metrics.exportLatency.record(
+        pluginName, exportName, System.nanoTime() - startNanos, NANOSECONDS);
+  }
+}
@@ -0,0 +1,227 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Sources and classes of the last compilation of a directory-based Scala plugin.
+ *
+ * <p>Dependencies between sources are approximated by name: a source depends on another one when it
+ * mentions the simple name of one of its top-level classes or objects. This over-approximates the
+ * real dependencies, which only costs some unneeded recompilations, except for package objects
+ * whose members can be used without naming them: a change to a package object therefore recompiles
+ * the whole plugin.
+ */
+public class ScalaIncrementalState {
+  private static final String PACKAGE_OBJECT = "package";
+
+  private final String id;
+  private final Map<Path, SourceSnapshot> sources;
+  private final Map<Path, Set<String>> definitions;
+  private final Map<String, byte[]> classes;
+
+  /** Content hash and identifiers of a Scala source file. */
+  public static class SourceSnapshot {
+    private final HashCode hash;
+    private final Set<String> identifiers;
+
+    SourceSnapshot(HashCode hash, Set<String> identifiers) {
+      this.hash = hash;
+      this.identifiers = identifiers;
+    }
+  }
+
+  public static Map<Path, SourceSnapshot> scan(List<Path> scalaFiles) throws IOException {
+    Map<Path, SourceSnapshot> snapshots = Maps.newHashMap();
+    for (Path scalaFile : scalaFiles) {
+      byte[] content = Files.readAllBytes(scalaFile);
+      snapshots.put(
+          scalaFile,
+          new SourceSnapshot(
+              Hashing.sha256().hashBytes(content), identifiersOf(new String(content, UTF_8))));
+    }
+    return snapshots;
+  }
+
+  /** Returns an identifier of the given sources, changing with the content of any of them. */
+  public static String idOf(Map<Path, SourceSnapshot> sources) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (Map.Entry<Path, SourceSnapshot> source : new TreeMap<>(sources).entrySet()) {
+      hasher.putString(source.getKey().toString(), UTF_8);
+      hasher.putBytes(source.getValue().hash.asBytes());
+    }
+    return hasher.hash().toString();
+  }
+
+  private static Set<String> identifiersOf(String scalaCode) {
+    Set<String> identifiers = Sets.newHashSet();
+    int length = scalaCode.length();
+    for (int i = 0; i < length; ) {
+      if (Character.isJavaIdentifierStart(scalaCode.charAt(i))) {
+        int start = i;
+        while (i < length && Character.isJavaIdentifierPart(scalaCode.charAt(i))) {
+          i++;
+        }
+        identifiers.add(scalaCode.substring(start, i));
+      } else {
+        i++;
+      }
+    }
+    return identifiers;
+  }
+
+  /**
+   * @param sources snapshots of the compiled sources.
+   * @param topLevelSymbols full name of each compiled top-level class or object, mapped to the path
+   *     of its source file.
+   * @param classes bytecode of the compiled classes, by binary name.
+   */
+  public ScalaIncrementalState(
+      Map<Path, SourceSnapshot> sources,
+      Map<String, String> topLevelSymbols,
+      Map<String, byte[]> classes) {
+    this.id = idOf(sources);
+    this.sources = ImmutableMap.copyOf(sources);
+    Map<Path, Set<String>> definitions = Maps.newHashMap();
+    Map<String, Path> sourcePaths = Maps.newHashMap();
+    for (Path sourcePath : sources.keySet()) {
+      definitions.put(sourcePath, Sets.newHashSet());
+      sourcePaths.put(sourcePath.toString(), sourcePath);
+    }
+    for (Map.Entry<String, String> symbol : topLevelSymbols.entrySet()) {
+      Path sourcePath = sourcePaths.get(symbol.getValue());
+      if (sourcePath != null) {
+        definitions.get(sourcePath).add(symbol.getKey());
+      }
+    }
+    this.definitions = definitions;
+    this.classes = ImmutableMap.copyOf(classes);
+  }
+
+  /** Returns the identifier of the compiled sources, as given by {@link #idOf}. */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Returns the sources that need to be compiled again: the new and modified ones, plus all the
+   * sources depending on them or on removed sources.
+   */
+  public Set<Path> invalidatedSources(Map<Path, SourceSnapshot> currentSources) {
+    Set<Path> invalidated = Sets.newHashSet();
+    Set<String> invalidatedNames = Sets.newHashSet();
+    for (Map.Entry<Path, SourceSnapshot> source : currentSources.entrySet()) {
+      SourceSnapshot previous = sources.get(source.getKey());
+      if (previous == null || !previous.hash.equals(source.getValue().hash)) {
+        invalidated.add(source.getKey());
+      }
+    }
+    for (Path sourcePath : sources.keySet()) {
+      if (!currentSources.containsKey(sourcePath)) {
+        invalidated.add(sourcePath);
+      }
+    }
+
+    for (Path sourcePath : invalidated) {
+      for (String name : definitionsOf(sourcePath)) {
+        String simpleName = simpleNameOf(name);
+        if (simpleName.equals(PACKAGE_OBJECT)) {
+          return Sets.newHashSet(currentSources.keySet());
+        }
+        invalidatedNames.add(simpleName);
+      }
+    }
+
+    boolean changed = !invalidatedNames.isEmpty();
+    while (changed) {
+      changed = false;
+      for (Map.Entry<Path, SourceSnapshot> source : currentSources.entrySet()) {
+        Path sourcePath = source.getKey();
+        if (!invalidated.contains(sourcePath)
+            && !Collections.disjoint(source.getValue().identifiers, invalidatedNames)) {
+          invalidated.add(sourcePath);
+          for (String name : definitionsOf(sourcePath)) {
+            invalidatedNames.add(simpleNameOf(name));
+          }
+          changed = true;
+        }
+      }
+    }
+
+    invalidated.retainAll(currentSources.keySet());
+    return invalidated;
+  }
+
+  /** Returns the classes that were not generated from any of the given sources. */
+  public Map<String, byte[]> reusableClasses(Set<Path> invalidatedSources) {
+    Set<String> reusableNames = Sets.newHashSet();
+    for (Map.Entry<Path, Set<String>> definition : definitions.entrySet()) {
+      if (!invalidatedSources.contains(definition.getKey())) {
+        reusableNames.addAll(definition.getValue());
+      }
+    }
+
+    Map<String, byte[]> reusableClasses = Maps.newHashMap();
+    for (Map.Entry<String, byte[]> classEntry : classes.entrySet()) {
+      if (reusableNames.contains(topLevelNameOf(classEntry.getKey()))) {
+        reusableClasses.put(classEntry.getKey(), classEntry.getValue());
+      }
+    }
+    return reusableClasses;
+  }
+
+  /** Returns the top-level symbols defined by the sources that are not in the given set. */
+  public Map<String, String> topLevelSymbolsExcept(Set<Path> invalidatedSources) {
+    Map<String, String> topLevelSymbols = Maps.newHashMap();
+    for (Map.Entry<Path, Set<String>> definition : definitions.entrySet()) {
+      if (!invalidatedSources.contains(definition.getKey())) {
+        for (String name : definition.getValue()) {
+          topLevelSymbols.put(name, definition.getKey().toString());
+        }
+      }
+    }
+    return topLevelSymbols;
+  }
+
+  private Set<String> definitionsOf(Path sourcePath) {
+    Set<String> names = definitions.get(sourcePath);
+    return names != null ? names : ImmutableSet.of();
+  }
+
+  private static String simpleNameOf(String fullName) {
+    return fullName.substring(fullName.lastIndexOf('.') + 1);
+  }
+
+  private static String topLevelNameOf(String className) {
+    int nestedPos = className.indexOf('$', className.lastIndexOf('.') + 1);
+    return nestedPos > 0 ? className.substring(0, nestedPos) : className;
+  }
+}
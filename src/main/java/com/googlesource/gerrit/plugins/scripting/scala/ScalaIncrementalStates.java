@@ -0,0 +1,39 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import com.google.common.collect.Maps;
+import com.google.inject.Singleton;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+
+/** Last compilation state of each directory-based Scala plugin, kept across plugin reloads. */
+@Singleton
+public class ScalaIncrementalStates {
+  private final Map<Path, ScalaIncrementalState> states = Maps.newConcurrentMap();
+
+  public Optional<ScalaIncrementalState> get(Path pluginDir) {
+    return Optional.ofNullable(states.get(pluginDir));
+  }
+
+  public void put(Path pluginDir, ScalaIncrementalState state) {
+    states.put(pluginDir, state);
+  }
+
+  /** Forgets the state of a plugin, unless it was replaced by a newer one in the meantime. */
+  public void remove(Path pluginDir, ScalaIncrementalState state) {
+    states.remove(pluginDir, state);
+  }
+}
@@ -0,0 +1,127 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.Map;
+import scala.Console;
+import scala.collection.immutable.List$;
+import scala.tools.nsc.Settings;
+import scala.tools.nsc.interpreter.IMain;
+import scala.tools.nsc.interpreter.Results;
+
+/**
+ * A Scala interpreter session, reused for the evaluation of one snippet after the other.
+ *
+ * <p>Each evaluation starts from a fresh state holding only the bound values, and writes the
+ * results of the interpreter and the console output of the snippet to the given stream.
+ */
+public class ScalaInterpreter {
+  private final TargetOutputStream output = new TargetOutputStream();
+  private final PrintStream console = new PrintStream(output, true);
+  private final Map<String, Binding> bindings;
+  private final IMain interpreter;
+  private int runs;
+
+  /** Value bound to a name in each evaluation. */
+  public static class Binding {
+    final String type;
+    final Object value;
+
+    public Binding(String type, Object value) {
+      this.type = type;
+      this.value = value;
+    }
+  }
+
+  /** Creates an interpreter seeing Gerrit's and this plugin's classes, and the given values. */
+  public ScalaInterpreter(Map<String, Binding> bindings) {
+    this.bindings = bindings;
+    Settings settings = new Settings();
+    settings.usejavacp().tryToSetFromPropertyValue("true");
+    settings.YclasspathImpl().tryToSetFromPropertyValue("flat");
+    settings.classpath().tryToSetFromPropertyValue(ScalaSettings.classPath());
+    interpreter = new IMain(settings, new PrintWriter(new OutputStreamWriter(output, UTF_8), true));
+    bind();
+  }
+
+  /**
+   * Evaluates a snippet on the calling thread.
+   *
+   * @return whether the snippet compiled and ran without throwing.
+   */
+  public boolean eval(String code, OutputStream out) {
+    runs++;
+    output.target = out;
+    Console.setOut(console);
+    Console.setErr(console);
+    try {
+      return interpreter.interpret(code) == Results.Success$.MODULE$;
+    } finally {
+      console.flush();
+      output.target = ByteStreams.nullOutputStream();
+    }
+  }
+
+  /** Forgets the definitions of the previous evaluation. */
+  public void reset() {
+    interpreter.reset();
+    bind();
+  }
+
+  public void close() {
+    interpreter.close();
+  }
+
+  public int getRuns() {
+    return runs;
+  }
+
+  private void bind() {
+    for (Map.Entry<String, Binding> binding : bindings.entrySet()) {
+      interpreter.bind(
+          binding.getKey(),
+          binding.getValue().type,
+          binding.getValue().value,
+          List$.MODULE$.<String>empty());
+    }
+  }
+
+  /** Forwards to the stream of the current evaluation, if any. */
+  private static class TargetOutputStream extends OutputStream {
+    volatile OutputStream target = ByteStreams.nullOutputStream();
+
+    @Override
+    public void write(int b) throws IOException {
+      target.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      target.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      target.flush();
+    }
+  }
+}
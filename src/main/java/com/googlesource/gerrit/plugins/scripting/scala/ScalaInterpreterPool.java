@@ -0,0 +1,327 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Warm Scala interpreter sessions for the {@code eval} SSH command.
+ *
+ * <p>Snippets are evaluated on threads of the pool, so that the caller can stop waiting after a
+ * timeout or once the snippet allocated too much memory. Such a snippet is then interrupted and
+ * abandoned, but it keeps running until it checks for the interruption: its session and its permit
+ * are only given back, with a new session, once its thread ended. The other sessions are reset and
+ * kept for the next evaluations. There are as many threads as sessions, so abandoned snippets
+ * cannot take more threads than that.
+ */
+@Singleton
+public class ScalaInterpreterPool implements LifecycleListener {
+  private static final Logger LOG = LoggerFactory.getLogger(ScalaInterpreterPool.class);
+  private static final long CHECK_FREQUENCY_MILLIS = 50;
+
+  /** Outcome of an evaluation. */
+  public enum Outcome {
+    SUCCESS,
+    ERROR,
+    TIMEOUT,
+    MEMORY_LIMIT,
+    /** No session became free before the timeout. */
+    NO_SESSION
+  }
+
+  private final int poolSize;
+  private final int maxRuns;
+  private final Map<String, ScalaInterpreter.Binding> bindings;
+  private final BlockingDeque<ScalaInterpreter> idleInterpreters = new LinkedBlockingDeque<>();
+  private final Semaphore permits;
+  private ExecutorService executor;
+
+  @Inject
+  public ScalaInterpreterPool(ScalaProviderConfig config, GerritApi gerritApi, Injector injector) {
+    this.poolSize = config.getEvalPoolSize();
+    this.maxRuns = config.getEvalMaxRuns();
+    this.permits = new Semaphore(poolSize, true);
+    this.bindings =
+        ImmutableMap.of(
+            "gerrit",
+            new ScalaInterpreter.Binding(GerritApi.class.getName(), gerritApi),
+            "injector",
+            new ScalaInterpreter.Binding(Injector.class.getName(), injector));
+  }
+
+  public boolean isEnabled() {
+    return poolSize > 0;
+  }
+
+  @Override
+  public void start() {
+    if (!isEnabled()) {
+      return;
+    }
+    executor =
+        Executors.newFixedThreadPool(
+            poolSize,
+            new ThreadFactoryBuilder().setNameFormat("ScalaEval-%d").setDaemon(true).build());
+    // Warmed up in the background, so that Gerrit does not wait for the interpreters to start;
+    // each warm-up holds the permit of the session it prepares, as evaluations do
+    for (int i = 0; i < poolSize; i++) {
+      permits.acquireUninterruptibly();
+      executeAndRelease(this::addWarmInterpreter);
+    }
+  }
+
+  private void addWarmInterpreter() {
+    try {
+      ScalaInterpreter interpreter = new ScalaInterpreter(bindings);
+      interpreter.eval("()", ByteStreams.nullOutputStream());
+      interpreter.reset();
+      idleInterpreters.offer(interpreter);
+    } catch (RuntimeException | Error e) {
+      LOG.warn("Cannot warm up Scala interpreter", e);
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    for (ScalaInterpreter interpreter = idleInterpreters.poll();
+        interpreter != null;
+        interpreter = idleInterpreters.poll()) {
+      interpreter.close();
+    }
+  }
+
+  /**
+   * Evaluates a snippet in a pooled session, writing its results to the given stream as they come.
+   *
+   * @param timeoutMillis time after which the evaluation is abandoned, including the wait for a
+   *     free session.
+   * @param maxAllocatedBytes bytes the evaluation may allocate before being abandoned, when the JVM
+   *     can measure the allocations of a thread.
+   * @throws InterruptedIOException if interrupted while waiting for a session or the evaluation.
+   */
+  public Outcome eval(String code, OutputStream out, long timeoutMillis, long maxAllocatedBytes)
+      throws InterruptedIOException {
+    long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeoutMillis);
+    try {
+      if (!permits.tryAcquire(timeoutMillis, MILLISECONDS)) {
+        return Outcome.NO_SESSION;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a Scala interpreter");
+    }
+
+    boolean reusable = false;
+    Evaluation evaluation = null;
+    try {
+      ScalaInterpreter session = idleInterpreters.pollFirst();
+      evaluation =
+          new Evaluation(session != null ? session : new ScalaInterpreter(bindings), code, out);
+      Future<Boolean> result = evaluate(evaluation);
+      while (true) {
+        try {
+          boolean success = result.get(CHECK_FREQUENCY_MILLIS, MILLISECONDS);
+          reusable = true;
+          return success ? Outcome.SUCCESS : Outcome.ERROR;
+        } catch (TimeoutException e) {
+          if (System.nanoTime() - deadline >= 0) {
+            result.cancel(true);
+            return Outcome.TIMEOUT;
+          }
+          if (evaluation.allocatedBytes() > maxAllocatedBytes) {
+            result.cancel(true);
+            return Outcome.MEMORY_LIMIT;
+          }
+        } catch (ExecutionException e) {
+          LOG.warn("Cannot evaluate Scala snippet", e.getCause());
+          return Outcome.ERROR;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while evaluating a Scala snippet");
+    } finally {
+      release(evaluation, reusable);
+    }
+  }
+
+  private Future<Boolean> evaluate(Evaluation evaluation) {
+    FutureTask<Boolean> result = new FutureTask<>(evaluation);
+    try {
+      executor.execute(
+          () -> {
+            try {
+              result.run();
+            } finally {
+              evaluation.ended();
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      evaluation.ended();
+      throw e;
+    }
+    return result;
+  }
+
+  /**
+   * Gives back the permit of an evaluation once its thread ended and its session is ready for the
+   * next one, without making the caller wait for it.
+   */
+  private void release(Evaluation evaluation, boolean reusable) {
+    if (evaluation == null) {
+      permits.release();
+      return;
+    }
+    ScalaInterpreter interpreter = evaluation.interpreter;
+    Runnable prepareNext;
+    if (reusable && interpreter.getRuns() < maxRuns) {
+      prepareNext =
+          () -> {
+            try {
+              interpreter.reset();
+              idleInterpreters.offerFirst(interpreter);
+            } catch (RuntimeException | Error e) {
+              LOG.warn("Cannot reset Scala interpreter", e);
+            }
+          };
+    } else {
+      prepareNext =
+          () -> {
+            interpreter.close();
+            addWarmInterpreter();
+          };
+    }
+    // An abandoned evaluation may still be running on its session
+    evaluation.whenEnded(() -> executeAndRelease(prepareNext));
+  }
+
+  /** Runs the given task on the pool, then gives back the permit it was run for. */
+  private void executeAndRelease(Runnable task) {
+    ExecutorService currentExecutor = executor;
+    if (currentExecutor == null) {
+      // Stopped
+      permits.release();
+      return;
+    }
+    try {
+      currentExecutor.execute(
+          () -> {
+            try {
+              task.run();
+            } finally {
+              permits.release();
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      // Stopping
+      permits.release();
+    }
+  }
+
+  private static class Evaluation implements Callable<Boolean> {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final ScalaInterpreter interpreter;
+    private final String code;
+    private final OutputStream out;
+    private volatile long threadId = -1;
+    private volatile long allocatedBytesAtStart;
+    private boolean ended;
+    private Runnable onEnd;
+
+    Evaluation(ScalaInterpreter interpreter, String code, OutputStream out) {
+      this.interpreter = interpreter;
+      this.code = code;
+      this.out = out;
+    }
+
+    @Override
+    public Boolean call() {
+      allocatedBytesAtStart = threadAllocatedBytes(Thread.currentThread().getId());
+      threadId = Thread.currentThread().getId();
+      return interpreter.eval(code, out);
+    }
+
+    /**
+     * Runs the given action once the thread of the evaluation is done with it, maybe right away.
+     */
+    void whenEnded(Runnable action) {
+      synchronized (this) {
+        if (!ended) {
+          onEnd = action;
+          return;
+        }
+      }
+      action.run();
+    }
+
+    void ended() {
+      Runnable action;
+      synchronized (this) {
+        ended = true;
+        action = onEnd;
+      }
+      if (action != null) {
+        action.run();
+      }
+    }
+
+    long allocatedBytes() {
+      long id = threadId;
+      if (id == -1) {
+        return 0;
+      }
+      long allocated = threadAllocatedBytes(id);
+      return allocated >= 0 ? allocated - allocatedBytesAtStart : 0;
+    }
+
+    private static long threadAllocatedBytes(long id) {
+      if (THREADS instanceof com.sun.management.ThreadMXBean) {
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(id);
+      }
+      return -1;
+    }
+  }
+}
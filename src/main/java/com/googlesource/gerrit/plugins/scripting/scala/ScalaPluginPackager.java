@@ -0,0 +1,169 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import com.google.common.collect.Sets;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.plugins.PluginEntry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Compiles a Scala plugin ahead of time into a plugin jar, so that it is loaded by Gerrit without
+ * running the Scala compiler.
+ *
+ * <p>The plugin is compiled as {@link ScalaPluginProvider} would, and the jar gets its classes, its
+ * web resources with the SSI pages rendered, and the manifest Gerrit derives from the {@code
+ * name-version.scala} file name and the Guice modules of the plugin.
+ */
+public class ScalaPluginPackager {
+  static final String JAR_EXTENSION = ".jar";
+
+  private final ScalaPluginScriptEngine scriptEngine;
+
+  /** Arguments: the plugin source file or directory, then optionally the jar to write. */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println(
+          "Usage: "
+              + ScalaPluginPackager.class.getName()
+              + " <name-version.scala file or directory> [<plugin jar>]");
+      System.exit(2);
+    }
+
+    Path srcFile = Paths.get(args[0]).toAbsolutePath();
+    Path jarFile = args.length > 1 ? Paths.get(args[1]) : Paths.get(jarFileNameOf(srcFile));
+    Path workDir = Files.createTempDirectory("scala-packager");
+    try {
+      new ScalaPluginPackager(workDir).writeJar(srcFile, jarFile);
+    } finally {
+      Files.deleteIfExists(workDir);
+    }
+    System.out.println("Scala plugin " + srcFile + " written to " + jarFile);
+  }
+
+  ScalaPluginPackager(Path workDir) {
+    Config config = new Config();
+    // Each run compiles from scratch and needs all the bytecode once the classes are defined
+    config.setBoolean("plugin", "scala-provider", "bytecodeCache", false);
+    config.setBoolean("plugin", "scala-provider", "releaseCompilerState", false);
+    ScalaProviderConfig providerConfig =
+        new ScalaProviderConfig(PluginConfig.createFromGerritConfig("scala-provider", config));
+    ScalaCompilerPool compilerPool = new ScalaCompilerPool(providerConfig);
+    this.scriptEngine =
+        new ScalaPluginScriptEngine(
+            compilerPool,
+            new ScalaBytecodeCache(workDir, providerConfig),
+            new ScalaIncrementalStates(),
+            providerConfig,
+            new ScalaProviderMetrics(new DisabledMetricMaker()),
+            new ScalaCompileServerClient(providerConfig),
+            new ScalaCompileScheduler(providerConfig));
+  }
+
+  void writeJar(Path srcFile, Path jarFile) throws IOException, ClassNotFoundException {
+    String name = ScalaPluginProvider.pluginNameOf(srcFile);
+    Set<Class<?>> classes = scriptEngine.eval(srcFile);
+    ScalaPluginScanner scanner = new ScalaPluginScanner(name, srcFile, classes);
+    long time = Files.getLastModifiedTime(srcFile).toMillis();
+
+    Manifest manifest = scanner.getManifest();
+    Attributes attributes = manifest.getMainAttributes();
+    attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    attributes.putValue("Gerrit-PluginName", name);
+
+    Path tmpJarFile = jarFile.resolveSibling(jarFile.getFileName() + ".tmp");
+    try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(tmpJarFile))) {
+      JarEntry manifestEntry = new JarEntry("META-INF/MANIFEST.MF");
+      manifestEntry.setTime(time);
+      jar.putNextEntry(manifestEntry);
+      manifest.write(jar);
+      jar.closeEntry();
+
+      Set<String> dirs = Sets.newHashSet();
+      Map<String, byte[]> classBytes = new TreeMap<>(scriptEngine.getClassLoader().getClassBytes());
+      for (Map.Entry<String, byte[]> classEntry : classBytes.entrySet()) {
+        String entryName =
+            classEntry.getKey().replace('.', '/')
+                + ScalaPluginScriptEngine.ScalaClassLoader.CLASS_EXTENSION;
+        putDirs(jar, dirs, entryName, time);
+        putEntry(jar, entryName, time).write(classEntry.getValue());
+        jar.closeEntry();
+      }
+
+      for (Enumeration<PluginEntry> entries = scanner.entries(); entries.hasMoreElements(); ) {
+        PluginEntry entry = entries.nextElement();
+        if (entry.getName().endsWith(ScalaPluginProvider.SCALA_EXTENSION)) {
+          // Sources are already compiled into the classes above
+          continue;
+        }
+        putDirs(jar, dirs, entry.getName(), entry.getTime());
+        try (InputStream in = scanner.getInputStream(entry)) {
+          in.transferTo(putEntry(jar, entry.getName(), entry.getTime()));
+        }
+        jar.closeEntry();
+      }
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(tmpJarFile);
+      throw e;
+    }
+    Files.move(tmpJarFile, jarFile, REPLACE_EXISTING, ATOMIC_MOVE);
+  }
+
+  private static OutputStream putEntry(JarOutputStream jar, String entryName, long time)
+      throws IOException {
+    JarEntry entry = new JarEntry(entryName);
+    entry.setTime(time);
+    jar.putNextEntry(entry);
+    return jar;
+  }
+
+  private static void putDirs(JarOutputStream jar, Set<String> dirs, String entryName, long time)
+      throws IOException {
+    for (int end = entryName.indexOf('/'); end != -1; end = entryName.indexOf('/', end + 1)) {
+      String dir = entryName.substring(0, end + 1);
+      if (dirs.add(dir)) {
+        putEntry(jar, dir, time);
+        jar.closeEntry();
+      }
+    }
+  }
+
+  static String jarFileNameOf(Path srcFile) {
+    String srcFileName = srcFile.getFileName().toString();
+    if (srcFileName.toLowerCase().endsWith(ScalaPluginProvider.SCALA_EXTENSION)) {
+      srcFileName =
+          srcFileName.substring(
+              0, srcFileName.length() - ScalaPluginProvider.SCALA_EXTENSION.length());
+    }
+    return srcFileName + JAR_EXTENSION;
+  }
+}
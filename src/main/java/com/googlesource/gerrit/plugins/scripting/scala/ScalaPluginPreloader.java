@@ -0,0 +1,231 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import com.google.common.collect.Maps;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.config.SitePaths;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles all the Scala plugins of the site in parallel when the provider starts.
+ *
+ * <p>Gerrit's plugin loader asks for the Scala plugins one at a time; {@link ScalaPluginProvider}
+ * then only waits for the compilation started here instead of compiling the plugin itself. The
+ * {@link ScalaPluginReloader} hands over the plugins it recompiles in the same way.
+ */
+@Singleton
+public class ScalaPluginPreloader implements LifecycleListener {
+  private static final Logger LOG = LoggerFactory.getLogger(ScalaPluginPreloader.class);
+
+  private final Path pluginsDir;
+  private final WorkQueue workQueue;
+  private final Provider<ScalaPluginScriptEngine> scriptEngineProvider;
+  private final int parallelism;
+  private final Map<Path, PreloadedPlugin> preloadedPlugins;
+  private ScheduledExecutorService executor;
+
+  private static class PreloadedPlugin {
+    final FileTime lastModified;
+    final Future<CompiledScalaPlugin> compiledPlugin;
+
+    PreloadedPlugin(FileTime lastModified, Future<CompiledScalaPlugin> compiledPlugin) {
+      this.lastModified = lastModified;
+      this.compiledPlugin = compiledPlugin;
+    }
+
+    /** Cancels the compilation, or releases its state when it already completed. */
+    void discard() {
+      if (compiledPlugin.cancel(true) || !compiledPlugin.isDone()) {
+        return;
+      }
+      try {
+        compiledPlugin.get().getScriptEngine().unload();
+      } catch (ExecutionException | CancellationException e) {
+        // Failed compilations keep no state
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Inject
+  public ScalaPluginPreloader(
+      SitePaths sitePaths,
+      WorkQueue workQueue,
+      Provider<ScalaPluginScriptEngine> scriptEngineProvider,
+      ScalaProviderConfig config) {
+    this.pluginsDir = sitePaths.plugins_dir;
+    this.workQueue = workQueue;
+    this.scriptEngineProvider = scriptEngineProvider;
+    this.parallelism = config.getStartupParallelism();
+    this.preloadedPlugins = Maps.newConcurrentMap();
+  }
+
+  @Override
+  public void start() {
+    if (parallelism <= 0 || !Files.isDirectory(pluginsDir)) {
+      return;
+    }
+
+    executor = workQueue.createQueue(parallelism, "ScalaPluginPreloader");
+    try (DirectoryStream<Path> plugins = Files.newDirectoryStream(pluginsDir)) {
+      for (Path srcFile : plugins) {
+        String fileName = srcFile.getFileName().toString();
+        if (!fileName.startsWith(".")
+            && fileName.toLowerCase().endsWith(ScalaPluginProvider.SCALA_EXTENSION)) {
+          preload(srcFile);
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot list Scala plugins in " + pluginsDir, e);
+    }
+    if (!preloadedPlugins.isEmpty()) {
+      LOG.info(
+          "Compiling "
+              + preloadedPlugins.size()
+              + " Scala plugin(s) with a parallelism of "
+              + parallelism);
+    }
+  }
+
+  private void preload(Path srcFile) throws IOException {
+    FileTime lastModified = lastModifiedOf(srcFile);
+    Future<CompiledScalaPlugin> compiledPlugin =
+        executor.submit(() -> CompiledScalaPlugin.compile(scriptEngineProvider.get(), srcFile));
+    put(srcFile, lastModified, compiledPlugin);
+  }
+
+  /**
+   * Registers a compilation of a plugin source, to be taken by the next load of the plugin.
+   *
+   * @param lastModified modification time of the sources when the compilation started, as given by
+   *     {@link #lastModifiedOf}.
+   */
+  public void put(Path srcFile, FileTime lastModified, Future<CompiledScalaPlugin> compiledPlugin) {
+    PreloadedPlugin previous =
+        preloadedPlugins.put(srcFile, new PreloadedPlugin(lastModified, compiledPlugin));
+    if (previous != null) {
+      previous.discard();
+    }
+  }
+
+  /** Returns whether the given compilation was registered and not taken yet. */
+  public boolean isPending(Path srcFile, Future<CompiledScalaPlugin> compiledPlugin) {
+    PreloadedPlugin preloadedPlugin = preloadedPlugins.get(srcFile);
+    return preloadedPlugin != null && preloadedPlugin.compiledPlugin == compiledPlugin;
+  }
+
+  /**
+   * Cancels the compilation registered for a plugin source, if any. A compilation that is never
+   * taken would otherwise keep its classes and class loader forever.
+   */
+  public void discard(Path srcFile) {
+    PreloadedPlugin preloadedPlugin = preloadedPlugins.remove(srcFile);
+    if (preloadedPlugin != null) {
+      preloadedPlugin.discard();
+    }
+  }
+
+  @Override
+  public void stop() {
+    for (PreloadedPlugin preloadedPlugin : preloadedPlugins.values()) {
+      preloadedPlugin.discard();
+    }
+    preloadedPlugins.clear();
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /**
+   * Takes the compilation started at startup for the given plugin source.
+   *
+   * <p>Each compilation is handed out once; it is discarded when the source was modified after the
+   * compilation started.
+   */
+  public Optional<Future<CompiledScalaPlugin>> take(Path srcFile) {
+    PreloadedPlugin preloadedPlugin = preloadedPlugins.remove(srcFile);
+    if (preloadedPlugin == null) {
+      return Optional.empty();
+    }
+
+    try {
+      if (preloadedPlugin.lastModified.equals(lastModifiedOf(srcFile))) {
+        return Optional.of(preloadedPlugin.compiledPlugin);
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot check modification time of Scala plugin " + srcFile, e);
+    }
+    preloadedPlugin.discard();
+    return Optional.empty();
+  }
+
+  /**
+   * Returns the last modification time of a plugin source. For a directory plugin, this is the
+   * newest modification time of the files and directories of its tree: a source edited in place
+   * does not change the modification time of its directory.
+   */
+  static FileTime lastModifiedOf(Path srcFile) throws IOException {
+    if (!Files.isDirectory(srcFile)) {
+      return Files.getLastModifiedTime(srcFile);
+    }
+    FileTime[] newest = {Files.getLastModifiedTime(srcFile)};
+    Files.walkFileTree(
+        srcFile,
+        EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+        Integer.MAX_VALUE,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            return visit(attrs);
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            return visit(attrs);
+          }
+
+          private FileVisitResult visit(BasicFileAttributes attrs) {
+            if (attrs.lastModifiedTime().compareTo(newest[0]) > 0) {
+              newest[0] = attrs.lastModifiedTime();
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    return newest[0];
+  }
+}
@@ -15,14 +15,20 @@
 package com.googlesource.gerrit.plugins.scripting.scala;
 
 import com.google.gerrit.extensions.annotations.PluginName;
-import com.google.gerrit.server.config.GerritRuntime;
 import com.google.gerrit.server.plugins.InvalidPluginException;
 import com.google.gerrit.server.plugins.ServerPlugin;
 import com.google.gerrit.server.plugins.ServerPluginProvider;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
+import com.googlesource.gerrit.plugins.web.GzipVariantCache;
+import com.googlesource.gerrit.plugins.web.WebResourceCache;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import org.eclipse.jgit.internal.storage.file.FileSnapshot;
 
 /**
@@ -45,32 +51,70 @@ class ScalaPluginProvider implements ServerPluginProvider {
   public static final String SCALA_EXTENSION = ".scala";
 
   private final Provider<ScalaPluginScriptEngine> scriptEngineProvider;
+  private final ScalaPluginPreloader preloader;
+  private final ScalaProviderMetrics metrics;
+  private final GzipVariantCache gzipVariants;
+  private final WebResourceCache resourceContents;
   private final String providerPluginName;
 
   @Inject
   public ScalaPluginProvider(
       Provider<ScalaPluginScriptEngine> scriptEngineProvider,
+      ScalaPluginPreloader preloader,
+      ScalaProviderMetrics metrics,
+      GzipVariantCache gzipVariants,
+      WebResourceCache resourceContents,
       @PluginName String providerPluginName) {
     this.scriptEngineProvider = scriptEngineProvider;
+    this.preloader = preloader;
+    this.metrics = metrics;
+    this.gzipVariants = gzipVariants;
+    this.resourceContents = resourceContents;
     this.providerPluginName = providerPluginName;
   }
 
   @Override
   public ServerPlugin get(Path srcFile, FileSnapshot snapshot, PluginDescription description)
       throws InvalidPluginException {
-    ScalaPluginScriptEngine scriptEngine = scriptEngineProvider.get();
+    CompiledScalaPlugin compiledPlugin = compile(srcFile);
     String name = getPluginName(srcFile);
-    return new ServerPlugin(
+    return new ScalaServerPlugin(
         name,
-        description.canonicalUrl,
-        description.user,
         srcFile,
         snapshot,
-        new ScalaPluginScanner(name, srcFile, scriptEngine),
-        description.dataDir,
-        scriptEngine.getClassLoader(),
-        "scala/" + name,
-        GerritRuntime.DAEMON);
+        description,
+        new ScalaPluginScanner(
+            name, srcFile, compiledPlugin.getClasses(), metrics, gzipVariants, resourceContents),
+        compiledPlugin.getScriptEngine().getClassLoader(),
+        () -> unload(srcFile, compiledPlugin.getScriptEngine()));
+  }
+
+  /**
+   * Releases what the provider kept for a plugin once Gerrit stopped it. When the plugin was
+   * removed rather than reloaded, a recompilation still waiting to be taken is discarded as well.
+   */
+  void unload(Path srcFile, ScalaPluginScriptEngine scriptEngine) {
+    scriptEngine.unload();
+    if (!Files.exists(srcFile)) {
+      preloader.discard(srcFile);
+    }
+  }
+
+  private CompiledScalaPlugin compile(Path srcFile) throws InvalidPluginException {
+    try {
+      Optional<Future<CompiledScalaPlugin>> preloadedPlugin = preloader.take(srcFile);
+      if (preloadedPlugin.isPresent()) {
+        return preloadedPlugin.get().get();
+      }
+      return CompiledScalaPlugin.compile(scriptEngineProvider.get(), srcFile);
+    } catch (ExecutionException e) {
+      throw new InvalidPluginException("Cannot evaluate script file " + srcFile, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InvalidPluginException("Interrupted while evaluating script file " + srcFile, e);
+    } catch (ClassNotFoundException | IOException e) {
+      throw new InvalidPluginException("Cannot evaluate script file " + srcFile, e);
+    }
   }
 
   @Override
@@ -80,12 +124,16 @@ class ScalaPluginProvider implements ServerPluginProvider {
 
   @Override
   public String getPluginName(Path srcFile) {
+    return pluginNameOf(srcFile);
+  }
+
+  static String pluginNameOf(Path srcFile) {
     String srcFileName = srcFile.getFileName().toString();
     int endPos = srcFileName.lastIndexOf('-');
     if (endPos == -1) {
       endPos = srcFileName.lastIndexOf('.');
     }
-    return srcFileName.substring(0, endPos);
+    return endPos != -1 ? srcFileName.substring(0, endPos) : srcFileName;
   }
 
   @Override
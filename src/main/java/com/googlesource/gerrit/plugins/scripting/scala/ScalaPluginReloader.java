@@ -0,0 +1,303 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.server.config.SitePaths;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.plugins.PluginLoader;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Recompiles the Scala plugins of the site in the background as soon as their sources change.
+ *
+ * <p>Once a plugin compiled successfully, it is handed to the {@link ScalaPluginPreloader} and
+ * Gerrit's plugin loader is asked to reload it: the running version is then swapped for the new one
+ * without waiting for the compiler. When the compilation fails, the running version keeps serving.
+ */
+@Singleton
+public class ScalaPluginReloader implements LifecycleListener {
+  private static final Logger LOG = LoggerFactory.getLogger(ScalaPluginReloader.class);
+  private static final long CHECK_FREQUENCY_MILLIS = 1000;
+
+  private final Path pluginsDir;
+  private final WorkQueue workQueue;
+  private final Provider<ScalaPluginScriptEngine> scriptEngineProvider;
+  private final ScalaPluginPreloader preloader;
+  private final Provider<PluginLoader> pluginLoader;
+  private final boolean enabled;
+  private final Map<WatchKey, Path> watchedDirs = Maps.newHashMap();
+  private final Map<Path, Long> changedPlugins = Maps.newHashMap();
+  private WatchService watcher;
+  private ScheduledExecutorService executor;
+
+  @Inject
+  public ScalaPluginReloader(
+      SitePaths sitePaths,
+      WorkQueue workQueue,
+      Provider<ScalaPluginScriptEngine> scriptEngineProvider,
+      ScalaPluginPreloader preloader,
+      Provider<PluginLoader> pluginLoader,
+      ScalaProviderConfig config) {
+    this.pluginsDir = sitePaths.plugins_dir;
+    this.workQueue = workQueue;
+    this.scriptEngineProvider = scriptEngineProvider;
+    this.preloader = preloader;
+    this.pluginLoader = pluginLoader;
+    this.enabled = config.isHotReloadEnabled();
+  }
+
+  @Override
+  public void start() {
+    if (!enabled || !Files.isDirectory(pluginsDir)) {
+      return;
+    }
+
+    try {
+      watchPlugins();
+    } catch (IOException | UnsupportedOperationException e) {
+      LOG.warn("Cannot watch Scala plugins in " + pluginsDir + ", hot reload is disabled", e);
+      closeWatcher();
+      return;
+    }
+
+    // A single thread, so that checks and compilations never overlap
+    executor = workQueue.createQueue(1, "ScalaPluginReloader");
+    executor.scheduleWithFixedDelay(
+        this::checkForChanges,
+        CHECK_FREQUENCY_MILLIS,
+        CHECK_FREQUENCY_MILLIS,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    closeWatcher();
+  }
+
+  private void closeWatcher() {
+    if (watcher != null) {
+      try {
+        watcher.close();
+      } catch (IOException e) {
+        LOG.warn("Cannot close watcher of Scala plugins", e);
+      }
+      watcher = null;
+    }
+    watchedDirs.clear();
+  }
+
+  /** Watches the plugins directory and the sources of its directory plugins. */
+  void watchPlugins() throws IOException {
+    watcher = pluginsDir.getFileSystem().newWatchService();
+    watch(pluginsDir);
+    try (DirectoryStream<Path> plugins = Files.newDirectoryStream(pluginsDir)) {
+      for (Path srcFile : plugins) {
+        if (isScalaPlugin(srcFile) && Files.isDirectory(srcFile)) {
+          watchTree(srcFile);
+        }
+      }
+    }
+  }
+
+  private void checkForChanges() {
+    try {
+      for (Path srcFile : takeStableChanges(System.nanoTime())) {
+        reload(srcFile);
+      }
+    } catch (RuntimeException e) {
+      // Would otherwise cancel the periodic check
+      LOG.error("Cannot check Scala plugins for changes", e);
+    }
+  }
+
+  /**
+   * Collects the changes to the sources of the plugins and returns the plugins to recompile: those
+   * whose sources were stable for one check, so that a plugin being copied or saved in several
+   * steps is compiled once, when complete.
+   */
+  List<Path> takeStableChanges(long nowNanos) {
+    collectChanges(nowNanos);
+    List<Path> stablePlugins = Lists.newArrayList();
+    Iterator<Map.Entry<Path, Long>> changes = changedPlugins.entrySet().iterator();
+    while (changes.hasNext()) {
+      Map.Entry<Path, Long> change = changes.next();
+      if (nowNanos - change.getValue() >= TimeUnit.MILLISECONDS.toNanos(CHECK_FREQUENCY_MILLIS)) {
+        changes.remove();
+        stablePlugins.add(change.getKey());
+      }
+    }
+    return stablePlugins;
+  }
+
+  /** Returns the plugins with changed sources, with the time of their last change. */
+  Map<Path, Long> getChangedPlugins() {
+    return ImmutableMap.copyOf(changedPlugins);
+  }
+
+  Set<Path> getWatchedDirs() {
+    return ImmutableSet.copyOf(watchedDirs.values());
+  }
+
+  private void collectChanges(long nowNanos) {
+    for (WatchKey key = watcher.poll(); key != null; key = watcher.poll()) {
+      Path dir = watchedDirs.get(key);
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == OVERFLOW || dir == null) {
+          LOG.warn("Changes to Scala plugins in " + pluginsDir + " were lost");
+          continue;
+        }
+
+        Path path = dir.resolve((Path) event.context());
+        Path srcFile = pluginsDir.resolve(pluginsDir.relativize(path).getName(0));
+        // A deleted directory is not a directory anymore: it is known from the watched ones
+        boolean deletedDir = event.kind() == ENTRY_DELETE && unwatch(path);
+        if (!isScalaPlugin(srcFile) || !(deletedDir || isScalaSource(path))) {
+          continue;
+        }
+        if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+          try {
+            watchTree(path);
+          } catch (IOException e) {
+            LOG.warn("Cannot watch Scala plugin sources in " + path, e);
+          }
+        }
+        changedPlugins.put(srcFile, nowNanos);
+      }
+      if (!key.reset()) {
+        watchedDirs.remove(key);
+      }
+    }
+  }
+
+  private void reload(Path srcFile) {
+    if (!Files.exists(srcFile)) {
+      // Removed plugins are unloaded by Gerrit's plugin loader
+      return;
+    }
+
+    String name = ScalaPluginProvider.pluginNameOf(srcFile);
+    CompletableFuture<CompiledScalaPlugin> compiledPlugin = new CompletableFuture<>();
+    try {
+      FileTime lastModified = ScalaPluginPreloader.lastModifiedOf(srcFile);
+      // Registered before compiling, so that a concurrent load of the plugin by Gerrit waits for
+      // this compilation instead of starting another one
+      preloader.put(srcFile, lastModified, compiledPlugin);
+      LOG.info("Recompiling Scala plugin " + name + " in the background");
+      compiledPlugin.complete(CompiledScalaPlugin.compile(scriptEngineProvider.get(), srcFile));
+    } catch (IOException | ClassNotFoundException | RuntimeException e) {
+      compiledPlugin.completeExceptionally(e);
+      LOG.error("Cannot recompile Scala plugin " + name + ", keeping the running version: " + e);
+      return;
+    }
+
+    if (pluginLoader.get().get(name) == null || !preloader.isPending(srcFile, compiledPlugin)) {
+      // Not running yet, or already loaded by Gerrit's plugin loader in the meantime
+      return;
+    }
+    try {
+      pluginLoader.get().reload(ImmutableList.of(name));
+      LOG.info("Scala plugin " + name + " reloaded");
+    } catch (Exception e) {
+      LOG.error("Cannot reload Scala plugin " + name + ", keeping the running version", e);
+    }
+  }
+
+  private void watch(Path dir) throws IOException {
+    watchedDirs.put(dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+  }
+
+  /**
+   * Stops watching a deleted or moved away directory and its subdirectories; returns whether it was
+   * watched.
+   */
+  private boolean unwatch(Path deletedPath) {
+    boolean watched = false;
+    Iterator<Map.Entry<WatchKey, Path>> dirs = watchedDirs.entrySet().iterator();
+    while (dirs.hasNext()) {
+      Map.Entry<WatchKey, Path> dir = dirs.next();
+      if (dir.getValue().startsWith(deletedPath)) {
+        dir.getKey().cancel();
+        dirs.remove();
+        watched = true;
+      }
+    }
+    return watched;
+  }
+
+  private void watchTree(Path dir) throws IOException {
+    Files.walkFileTree(
+        dir,
+        EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+        Integer.MAX_VALUE,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path subDir, BasicFileAttributes attrs)
+              throws IOException {
+            watch(subDir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  private static boolean isScalaPlugin(Path srcFile) {
+    String fileName = srcFile.getFileName().toString();
+    return !fileName.startsWith(".")
+        && fileName.toLowerCase().endsWith(ScalaPluginProvider.SCALA_EXTENSION);
+  }
+
+  /** Whether a changed path can affect a plugin: a Scala file or a directory of a plugin. */
+  private static boolean isScalaSource(Path path) {
+    return path.getFileName().toString().endsWith(ScalaPluginProvider.SCALA_EXTENSION)
+        || Files.isDirectory(path);
+  }
+}
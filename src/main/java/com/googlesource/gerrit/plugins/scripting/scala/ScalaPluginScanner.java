@@ -13,30 +13,54 @@
 // limitations under the License.
 package com.googlesource.gerrit.plugins.scripting.scala;
 
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.Timer1;
 import com.google.gerrit.server.plugins.AbstractPreloadedPluginScanner;
 import com.google.gerrit.server.plugins.InvalidPluginException;
 import com.google.gerrit.server.plugins.Plugin;
 import com.google.gerrit.server.plugins.PluginEntry;
+import com.googlesource.gerrit.plugins.web.GzipVariantCache;
 import com.googlesource.gerrit.plugins.web.WebPluginScanner;
+import com.googlesource.gerrit.plugins.web.WebResourceCache;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.annotation.Annotation;
 import java.nio.file.Path;
 import java.util.Enumeration;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 public class ScalaPluginScanner extends AbstractPreloadedPluginScanner {
   private final WebPluginScanner webScanner;
+  private final ScalaProviderMetrics metrics;
 
   public ScalaPluginScanner(String pluginName, Path srcFile, ScalaPluginScriptEngine scriptEngine)
       throws InvalidPluginException {
-    super(
+    this(pluginName, srcFile, loadScriptClasses(srcFile, scriptEngine));
+  }
+
+  public ScalaPluginScanner(String pluginName, Path srcFile, Set<Class<?>> scriptClasses) {
+    this(
         pluginName,
-        getPluginVersion(srcFile),
-        loadScriptClasses(srcFile, scriptEngine),
-        Plugin.ApiType.PLUGIN);
+        srcFile,
+        scriptClasses,
+        new ScalaProviderMetrics(new DisabledMetricMaker()),
+        new GzipVariantCache(0),
+        new WebResourceCache(0));
+  }
 
-    this.webScanner = new WebPluginScanner(srcFile);
+  public ScalaPluginScanner(
+      String pluginName,
+      Path srcFile,
+      Set<Class<?>> scriptClasses,
+      ScalaProviderMetrics metrics,
+      GzipVariantCache gzipVariants,
+      WebResourceCache resourceContents) {
+    super(pluginName, getPluginVersion(srcFile), scriptClasses, Plugin.ApiType.PLUGIN);
+
+    this.webScanner = new WebPluginScanner(srcFile, gzipVariants, resourceContents);
+    this.metrics = metrics;
   }
 
   private static String getPluginVersion(Path srcFile) {
@@ -58,6 +82,15 @@ public class ScalaPluginScanner extends AbstractPreloadedPluginScanner {
     }
   }
 
+  @Override
+  public Map<Class<? extends Annotation>, Iterable<ExtensionMetaData>> scan(
+      String pluginName, Iterable<Class<? extends Annotation>> annotations)
+      throws InvalidPluginException {
+    try (Timer1.Context<String> ctx = metrics.scanLatency.start(pluginName)) {
+      return super.scan(pluginName, annotations);
+    }
+  }
+
   @Override
   public Optional<PluginEntry> getEntry(String resourcePath) throws IOException {
     return webScanner.getEntry(resourcePath);
@@ -72,4 +105,9 @@ public class ScalaPluginScanner extends AbstractPreloadedPluginScanner {
   public Enumeration<PluginEntry> entries() {
     return webScanner.entries();
   }
+
+  /** Stops watching the web resources of the plugin, once it is unloaded. */
+  public void close() {
+    webScanner.close();
+  }
 }
@@ -13,103 +13,259 @@
 // limitations under the License.
 package com.googlesource.gerrit.plugins.scripting.scala;
 
-import static scala.collection.JavaConversions.asScalaBuffer;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
-import com.google.common.base.Function;
-import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.gerrit.metrics.Timer1;
 import com.google.inject.Inject;
+import com.googlesource.gerrit.plugins.scripting.scala.ScalaIncrementalState.SourceSnapshot;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import scala.Char;
 import scala.Option;
 import scala.Tuple2;
 import scala.collection.Iterator;
-import scala.collection.immutable.Seq;
 import scala.collection.mutable.Map;
 import scala.reflect.internal.util.BatchSourceFile;
 import scala.reflect.internal.util.SourceFile;
 import scala.reflect.io.AbstractFile;
 import scala.reflect.io.VirtualDirectory;
-import scala.tools.nsc.Global;
-import scala.tools.nsc.Global.Run;
+import scala.reflect.io.VirtualFile;
 
 public class ScalaPluginScriptEngine {
   private static final Logger LOG = LoggerFactory.getLogger(ScalaPluginScriptEngine.class);
+  private static final int MAPPED_READ_THRESHOLD = 1024 * 1024;
 
   // private final IMain scalaEngine;
   private final ScalaClassLoader classLoader;
-  private Global globalEngine;
-  private ScalaReporter reporter;
+  private final ScalaCompilerPool compilerPool;
+  private final ScalaBytecodeCache bytecodeCache;
+  private final ScalaIncrementalStates incrementalStates;
+  private final boolean releaseCompilerState;
+  private final ScalaProviderMetrics metrics;
+  private final ScalaCompileServerClient compileServer;
+  private final ScalaCompileScheduler compileScheduler;
+  private final boolean instrumentExports;
+  private Path pluginDir;
+  private ScalaIncrementalState incrementalState;
 
-  public class ScalaClassLoader extends ClassLoader {
-    private static final String CLASS_EXTENSION = ".class";
-    private Map<String, AbstractFile> scalaClasses;
+  /**
+   * Class loader of a Scala plugin.
+   *
+   * <p>Classes are compiled into its virtual directory, which is then flattened into an immutable
+   * map from binary class name to bytecode by {@link #setClassBytes}. When created to release the
+   * bytecode, the bytes of each class are dropped as soon as the class is defined; the class file
+   * is then no longer available as a resource either.
+   */
+  public static class ScalaClassLoader extends ClassLoader {
+    static final String CLASS_EXTENSION = ".class";
+    private static final String RESOURCE_PROTOCOL = "scala-plugin";
 
-    public ScalaClassLoader(ScalaSettings settings) {
+    static {
+      registerAsParallelCapable();
+    }
+
+    private final VirtualDirectory virtualDirectory;
+    private final boolean releaseBytecode;
+    private volatile java.util.Map<String, byte[]> classBytes = ImmutableMap.of();
+    private volatile java.util.Map<String, ScalaExportProbe> exportProbes = ImmutableMap.of();
+
+    private final URLStreamHandler resourceHandler =
+        new URLStreamHandler() {
+          @Override
+          protected URLConnection openConnection(URL url) throws IOException {
+            String resourceName = url.getPath().substring(1);
+            byte[] bytes = getResourceBytes(resourceName);
+            if (bytes == null) {
+              throw new FileNotFoundException("Cannot find Scala plugin resource " + resourceName);
+            }
+            return new URLConnection(url) {
+              @Override
+              public void connect() {}
+
+              @Override
+              public InputStream getInputStream() {
+                return new ByteArrayInputStream(bytes);
+              }
+
+              @Override
+              public long getContentLengthLong() {
+                return bytes.length;
+              }
+            };
+          }
+        };
+
+    public ScalaClassLoader() {
+      this(false);
+    }
+
+    public ScalaClassLoader(boolean releaseBytecode) {
       super(ScalaClassLoader.class.getClassLoader());
-      scalaClasses = settings.getVirtualDirectory().scala$reflect$io$VirtualDirectory$$files();
+      this.releaseBytecode = releaseBytecode;
+      virtualDirectory = new VirtualDirectory("(memory)", Option.apply((VirtualDirectory) null));
     }
 
     @Override
     protected Class<?> findClass(String name) throws ClassNotFoundException {
-      AbstractFile classFile = getClassFile(name, scalaClasses);
-      byte[] ba;
-      try {
-        ba = classFile.toByteArray();
+      byte[] ba = releaseBytecode ? classBytes.remove(name) : classBytes.get(name);
+      if (ba == null) {
+        throw new ClassNotFoundException("Cannot find compiled Scala code for class " + name);
+      }
+      ScalaExportProbe probe = exportProbes.get(name);
+      if (probe == null) {
         return defineClass(name, ba, 0, ba.length);
-      } catch (IOException e) {
-        throw new ClassNotFoundException("Cannot open Scala class file " + classFile, e);
       }
+      return defineProbedClass(name, ba, probe);
     }
 
-    private AbstractFile getClassFile(String fullClassName, Map<String, AbstractFile> tree)
+    private Class<?> defineProbedClass(String name, byte[] ba, ScalaExportProbe probe)
         throws ClassNotFoundException {
-      String[] nameComponents = fullClassName.split("\\.");
-      nameComponents[nameComponents.length - 1] =
-          nameComponents[nameComponents.length - 1] + CLASS_EXTENSION;
-      for (String component : nameComponents) {
-        Option<AbstractFile> node = tree.get(component);
-        if (node.isEmpty()) {
-          throw new ClassNotFoundException(
-              "Cannot find compiled Scala code for class "
-                  + fullClassName
-                  + ": "
-                  + component
-                  + " is unknown");
-        }
+      byte[] instrumented;
+      try {
+        instrumented = ScalaExportInstrumenter.instrument(ba);
+      } catch (RuntimeException e) {
+        LOG.warn("Cannot instrument Scala class " + name + ", loading it as is", e);
+        instrumented = null;
+      }
+      if (instrumented == null) {
+        return defineClass(name, ba, 0, ba.length);
+      }
 
-        AbstractFile abstractFile = node.get();
-        if (component.endsWith(CLASS_EXTENSION)) {
-          return abstractFile;
-        } else {
-          tree = ((VirtualDirectory) abstractFile).scala$reflect$io$VirtualDirectory$$files();
-        }
+      Class<?> clazz = defineClass(name, instrumented, 0, instrumented.length);
+      try {
+        clazz.getField(ScalaExportInstrumenter.PROBE_FIELD).set(null, probe);
+      } catch (ReflectiveOperationException e) {
+        throw new ClassNotFoundException("Cannot instrument Scala class " + name, e);
       }
-      throw new ClassNotFoundException(
-          "Cannot find compiled Scala code for class " + fullClassName);
+      return clazz;
+    }
+
+    /**
+     * Instruments the entry points of the given classes when they are defined.
+     *
+     * @param exportProbes probe recording the invocations of each class, by binary class name.
+     */
+    public void setExportProbes(java.util.Map<String, ScalaExportProbe> exportProbes) {
+      this.exportProbes = ImmutableMap.copyOf(exportProbes);
+    }
+
+    @Override
+    protected URL findResource(String name) {
+      if (getResourceBytes(name) == null) {
+        return null;
+      }
+      try {
+        return new URL(RESOURCE_PROTOCOL, null, -1, "/" + name, resourceHandler);
+      } catch (MalformedURLException e) {
+        return null;
+      }
+    }
+
+    @Override
+    protected Enumeration<URL> findResources(String name) {
+      URL url = findResource(name);
+      return url != null
+          ? Collections.enumeration(Collections.singleton(url))
+          : Collections.emptyEnumeration();
+    }
+
+    private byte[] getResourceBytes(String resourceName) {
+      if (!resourceName.endsWith(CLASS_EXTENSION)) {
+        return null;
+      }
+      return classBytes.get(
+          resourceName
+              .substring(0, resourceName.length() - CLASS_EXTENSION.length())
+              .replace('/', '.'));
+    }
+
+    public VirtualDirectory getVirtualDirectory() {
+      return virtualDirectory;
     }
 
     public Set<String> getAllLoadedClassNames() {
-      return scanTree("", scalaClasses);
+      return classBytes.keySet();
+    }
+
+    /** Returns the bytecode of the classes not defined yet, or of all of them when kept. */
+    public java.util.Map<String, byte[]> getClassBytes() {
+      return Collections.unmodifiableMap(classBytes);
+    }
+
+    /** Returns the bytecode of the classes compiled into the virtual directory. */
+    public java.util.Map<String, byte[]> getAllClassBytes() throws IOException {
+      java.util.Map<String, byte[]> compiledClasses = Maps.newHashMap();
+      scanTree("", virtualDirectory.scala$reflect$io$VirtualDirectory$$files(), compiledClasses);
+      return compiledClasses;
+    }
+
+    /**
+     * Makes the given classes available to this class loader and releases the virtual directory
+     * they were compiled to.
+     */
+    public void setClassBytes(java.util.Map<String, byte[]> classBytes) {
+      this.classBytes =
+          releaseBytecode ? new ConcurrentHashMap<>(classBytes) : ImmutableMap.copyOf(classBytes);
+      virtualDirectory.clear();
+    }
+
+    public void addClassBytes(java.util.Map<String, byte[]> classBytes) throws IOException {
+      for (java.util.Map.Entry<String, byte[]> classEntry : classBytes.entrySet()) {
+        String[] nameComponents = classEntry.getKey().split("\\.");
+        AbstractFile dir = virtualDirectory;
+        for (int i = 0; i < nameComponents.length - 1; i++) {
+          dir = dir.subdirectoryNamed(nameComponents[i]);
+        }
+        AbstractFile classFile =
+            dir.fileNamed(nameComponents[nameComponents.length - 1] + CLASS_EXTENSION);
+        try (OutputStream out = classFile.output()) {
+          out.write(classEntry.getValue());
+        }
+      }
     }
 
-    private Set<String> scanTree(String packageName, Map<String, AbstractFile> tree) {
-      Set<String> classNames = Sets.newHashSet();
+    private void scanTree(
+        String packageName,
+        Map<String, AbstractFile> tree,
+        java.util.Map<String, byte[]> compiledClasses)
+        throws IOException {
       for (Iterator<Tuple2<String, AbstractFile>> keysIter = tree.toIterator();
           keysIter.hasNext(); ) {
         Tuple2<String, AbstractFile> node = keysIter.next();
@@ -117,20 +273,19 @@ public class ScalaPluginScriptEngine {
         AbstractFile fileContent = node._2;
 
         if (fileName.endsWith(CLASS_EXTENSION)) {
-          classNames.add(
+          compiledClasses.put(
               nameWithPackage(
-                  packageName,
-                  fileName.substring(0, fileName.length() - CLASS_EXTENSION.length())));
+                  packageName, fileName.substring(0, fileName.length() - CLASS_EXTENSION.length())),
+              fileContent.toByteArray());
 
         } else if (VirtualDirectory.class.isAssignableFrom(fileContent.getClass())) {
           VirtualDirectory subNode = (VirtualDirectory) node._2;
-          classNames.addAll(
-              scanTree(
-                  nameWithPackage(packageName, fileName),
-                  subNode.scala$reflect$io$VirtualDirectory$$files()));
+          scanTree(
+              nameWithPackage(packageName, fileName),
+              subNode.scala$reflect$io$VirtualDirectory$$files(),
+              compiledClasses);
         }
       }
-      return classNames;
     }
 
     private String nameWithPackage(String packageName, String packageMember) {
@@ -143,23 +298,38 @@ public class ScalaPluginScriptEngine {
   }
 
   @Inject
-  public ScalaPluginScriptEngine(ScalaSettings settings, ScalaReporter reporter) {
-    this.classLoader = new ScalaClassLoader(settings);
-    globalEngine = new Global(settings.getSettings(), reporter.getConsoleReporter());
-    this.reporter = reporter;
+  public ScalaPluginScriptEngine(
+      ScalaCompilerPool compilerPool,
+      ScalaBytecodeCache bytecodeCache,
+      ScalaIncrementalStates incrementalStates,
+      ScalaProviderConfig config,
+      ScalaProviderMetrics metrics,
+      ScalaCompileServerClient compileServer,
+      ScalaCompileScheduler compileScheduler) {
+    this.releaseCompilerState = config.isReleaseCompilerState();
+    this.classLoader = new ScalaClassLoader(releaseCompilerState);
+    this.compilerPool = compilerPool;
+    this.bytecodeCache = bytecodeCache;
+    this.incrementalStates = incrementalStates;
+    this.metrics = metrics;
+    this.compileServer = compileServer;
+    this.compileScheduler = compileScheduler;
+    this.instrumentExports = config.isExportInstrumentationEnabled();
   }
 
   public Set<Class<?>> eval(Path scalaFile) throws IOException, ClassNotFoundException {
+    String pluginName = ScalaPluginProvider.pluginNameOf(scalaFile);
     if (Files.isRegularFile(scalaFile)) {
-      return evalFiles(Arrays.asList(scalaFile));
+      return evalFiles(pluginName, Arrays.asList(scalaFile), Optional.empty());
     } else if (Files.isDirectory(scalaFile)) {
-      return evalDirectory(scalaFile);
+      return evalDirectory(pluginName, scalaFile);
     } else {
       throw new IOException("File " + scalaFile + " is not a supported for loading Scala scripts");
     }
   }
 
-  private Set<Class<?>> evalDirectory(Path scalaFile) throws IOException, ClassNotFoundException {
+  private Set<Class<?>> evalDirectory(String pluginName, Path scalaFile)
+      throws IOException, ClassNotFoundException {
     final List<Path> scalaFiles = Lists.newArrayList();
 
     Files.walkFileTree(
@@ -178,58 +348,358 @@ public class ScalaPluginScriptEngine {
             return FileVisitResult.CONTINUE;
           }
         });
-    return evalFiles(scalaFiles);
+    return evalFiles(pluginName, scalaFiles, Optional.of(scalaFile));
   }
 
-  private Set<Class<?>> evalFiles(List<Path> scalaFiles)
+  private Set<Class<?>> evalFiles(
+      String pluginName, List<Path> scalaFiles, Optional<Path> pluginDir)
       throws IOException, ClassNotFoundException {
+    java.util.Map<String, byte[]> classBytes;
+    try {
+      long sourceBytes = 0;
+      for (Path scalaFile : scalaFiles) {
+        sourceBytes += Files.size(scalaFile);
+      }
+      metrics.sourceBytes.record(pluginName, sourceBytes);
+
+      if (bytecodeCache.isEnabled()) {
+        String cacheKey = bytecodeCache.keyOf(scalaFiles, ScalaSettings.classPathFingerprint());
+        Optional<java.util.Map<String, byte[]>> cachedClasses = bytecodeCache.get(cacheKey);
+        metrics.bytecodeCacheLookups.increment(pluginName, cachedClasses.isPresent());
+        if (cachedClasses.isPresent()) {
+          classBytes = cachedClasses.get();
+          LOG.info("Scala files " + scalaFiles + " loaded from bytecode cache");
+        } else {
+          classBytes = compile(pluginName, scalaFiles, pluginDir, sourceBytes);
+          bytecodeCache.put(cacheKey, classBytes);
+        }
+      } else {
+        classBytes = compile(pluginName, scalaFiles, pluginDir, sourceBytes);
+      }
+    } catch (IOException e) {
+      metrics.failures.increment(pluginName, ScalaProviderMetrics.STAGE_COMPILE);
+      throw e;
+    }
+
+    long bytecodeBytes = 0;
+    for (byte[] bytes : classBytes.values()) {
+      bytecodeBytes += bytes.length;
+    }
+    metrics.generatedClasses.record(pluginName, classBytes.size());
+    metrics.bytecodeBytes.record(pluginName, bytecodeBytes);
+
+    classLoader.setClassBytes(classBytes);
+
+    // Only the classes Gerrit registers are defined here, the others are defined on first use
+    ScalaClassIndex classIndex = ScalaClassIndex.of(classBytes);
+    if (instrumentExports) {
+      java.util.Map<String, ScalaExportProbe> exportProbes = Maps.newHashMap();
+      for (java.util.Map.Entry<String, String> export : classIndex.getExports().entrySet()) {
+        exportProbes.put(
+            export.getKey(), new ScalaExportProbe(metrics, pluginName, export.getValue()));
+      }
+      classLoader.setExportProbes(exportProbes);
+    }
     Set<Class<?>> classes = Sets.newHashSet();
+    try (Timer1.Context<String> ctx = metrics.classDefinitionLatency.start(pluginName)) {
+      for (String className : classIndex.getPluginEntryPoints(classLoader.getParent())) {
+        Class<?> clazz = classLoader.loadClass(className);
+        classes.add(clazz);
+      }
+    } catch (ClassNotFoundException e) {
+      metrics.failures.increment(pluginName, ScalaProviderMetrics.STAGE_CLASS_DEFINITION);
+      throw e;
+    }
+    return classes;
+  }
+
+  private java.util.Map<String, byte[]> compile(
+      String pluginName, List<Path> scalaFiles, Optional<Path> pluginDir, long sourceBytes)
+      throws IOException {
+    try (Timer1.Context<String> ctx = metrics.compileLatency.start(pluginName)) {
+      return compileClasses(pluginName, scalaFiles, pluginDir, sourceBytes);
+    }
+  }
+
+  /**
+   * Waits until a compilation can run in Gerrit's JVM; compilations of the compile server use the
+   * heap of the server and are not admitted here.
+   */
+  private ScalaCompileScheduler.Admission admit(String pluginName, long sourceBytes)
+      throws IOException {
+    ScalaCompileScheduler.Admission admission = compileScheduler.admit(pluginName, sourceBytes);
+    metrics.queueLatency.record(pluginName, admission.getWaitNanos(), NANOSECONDS);
+    return admission;
+  }
+
+  private java.util.Map<String, byte[]> compileClasses(
+      String pluginName, List<Path> scalaFiles, Optional<Path> pluginDir, long sourceBytes)
+      throws IOException {
+    if (!pluginDir.isPresent() || releaseCompilerState) {
+      compileFiles(pluginName, scalaFiles, sourceBytes);
+      return classLoader.getAllClassBytes();
+    }
 
-    List<SourceFile> scalaSourceFiles =
-        Lists.transform(
+    java.util.Map<Path, SourceSnapshot> sources = ScalaIncrementalState.scan(scalaFiles);
+    java.util.Map<String, String> topLevelSymbols =
+        compileDirectory(
+            pluginName,
+            pluginDir.get(),
             scalaFiles,
-            new Function<Path, SourceFile>() {
-              @Override
-              public SourceFile apply(Path scalaFile) {
-                try {
-                  return new BatchSourceFile(scalaFile.toString(), readScalaFile(scalaFile));
-                } catch (IOException e) {
-                  throw new IllegalArgumentException("Cannot load scala file " + scalaFile, e);
-                }
-              }
-            });
-    Run run = globalEngine.new Run();
-    reporter.reset();
-    run.compileSources(asScalaBuffer(scalaSourceFiles).toList());
-    if (reporter.hasErrors()) {
+            sources,
+            incrementalStates.get(pluginDir.get()),
+            sourceBytes);
+    java.util.Map<String, byte[]> classBytes = classLoader.getAllClassBytes();
+    incrementalState = new ScalaIncrementalState(sources, topLevelSymbols, classBytes);
+    incrementalStates.put(pluginDir.get(), incrementalState);
+    this.pluginDir = pluginDir.get();
+    return classBytes;
+  }
+
+  /**
+   * Compiles a directory plugin with the compile server when enabled, on a pooled compiler
+   * otherwise. When the compiler still knows the classes of the previous state of the plugin, only
+   * the sources invalidated since then are compiled.
+   *
+   * @return the top-level symbols of all the sources.
+   */
+  private java.util.Map<String, String> compileDirectory(
+      String pluginName,
+      Path pluginDir,
+      List<Path> scalaFiles,
+      java.util.Map<Path, SourceSnapshot> sources,
+      Optional<ScalaIncrementalState> previousState,
+      long sourceBytes)
+      throws IOException {
+    Set<Path> invalidatedSources =
+        previousState.isPresent()
+            ? previousState.get().invalidatedSources(sources)
+            : sources.keySet();
+    List<Path> changedFiles = Lists.newArrayList();
+    Set<String> retainedSources = Sets.newHashSet();
+    for (Path scalaFile : scalaFiles) {
+      if (invalidatedSources.contains(scalaFile)) {
+        changedFiles.add(scalaFile);
+      } else {
+        retainedSources.add(scalaFile.toString());
+      }
+    }
+    String previousStateId = previousState.map(ScalaIncrementalState::getId).orElse(null);
+    String stateId = ScalaIncrementalState.idOf(sources);
+
+    Optional<ScalaCompileResult> result =
+        compileServer.compile(scalaFiles, previousStateId, retainedSources, stateId);
+    if (result.isPresent()) {
+      java.util.Map<String, String> topLevelSymbols = Maps.newHashMap();
+      if (result.get().isIncremental() && previousState.isPresent()) {
+        classLoader.addClassBytes(previousState.get().reusableClasses(invalidatedSources));
+        topLevelSymbols.putAll(previousState.get().topLevelSymbolsExcept(invalidatedSources));
+        logRecompiled(changedFiles, scalaFiles, pluginDir);
+      }
+      topLevelSymbols.putAll(loadCompileResult(pluginName, scalaFiles, result.get()));
+      return topLevelSymbols;
+    }
+
+    try (ScalaCompileScheduler.Admission admission = admit(pluginName, sourceBytes)) {
+      ScalaCompiler compiler = compilerPool.borrow(previousStateId);
+      try {
+        java.util.Map<String, String> topLevelSymbols = null;
+        if (previousState.isPresent() && previousStateId.equals(compiler.getStateId())) {
+          topLevelSymbols =
+              compileIncrementally(
+                  pluginName,
+                  compiler,
+                  pluginDir,
+                  scalaFiles,
+                  changedFiles,
+                  retainedSources,
+                  previousState.get(),
+                  invalidatedSources);
+        }
+        if (topLevelSymbols == null) {
+          if (!compileWith(pluginName, compiler, scalaFiles, ImmutableSet.of())) {
+            throw new IOException(
+                "Invalid Scala files " + scalaFiles + "\n" + compiler.getReporter().getOutput());
+          }
+          topLevelSymbols = compiler.getTopLevelSymbols();
+        }
+        compiler.setStateId(stateId);
+        return topLevelSymbols;
+      } finally {
+        compilerPool.release(compiler);
+      }
+    }
+  }
+
+  /**
+   * Compiles the sources invalidated since the previous state, with a compiler that still has the
+   * classes of the other sources in its symbol table.
+   *
+   * @return the top-level symbols of all the sources, or null when the incremental compilation
+   *     failed and a full compilation is needed.
+   */
+  private java.util.Map<String, String> compileIncrementally(
+      String pluginName,
+      ScalaCompiler compiler,
+      Path pluginDir,
+      List<Path> scalaFiles,
+      List<Path> changedFiles,
+      Set<String> retainedSources,
+      ScalaIncrementalState previousState,
+      Set<Path> invalidatedSources)
+      throws IOException {
+    java.util.Map<String, byte[]> reusableClasses =
+        previousState.reusableClasses(invalidatedSources);
+    java.util.Map<String, String> topLevelSymbols =
+        previousState.topLevelSymbolsExcept(invalidatedSources);
+
+    classLoader.addClassBytes(reusableClasses);
+    if (!changedFiles.isEmpty()) {
+      if (!compileWith(pluginName, compiler, changedFiles, retainedSources)) {
+        LOG.warn("Cannot recompile only " + changedFiles + ", recompiling all of " + pluginDir);
+        classLoader.getVirtualDirectory().clear();
+        return null;
+      }
+      topLevelSymbols.putAll(compiler.getTopLevelSymbols());
+    }
+    logRecompiled(changedFiles, scalaFiles, pluginDir);
+    return topLevelSymbols;
+  }
+
+  private static void logRecompiled(
+      List<Path> changedFiles, List<Path> scalaFiles, Path pluginDir) {
+    LOG.info(
+        "Recompiled "
+            + changedFiles.size()
+            + " of "
+            + scalaFiles.size()
+            + " Scala files of "
+            + pluginDir);
+  }
+
+  /**
+   * Forgets the incremental compilation state of the plugin loaded by this engine, once the plugin
+   * is unloaded. The state is kept when a newer version of the plugin replaced it.
+   */
+  public void unload() {
+    if (incrementalState != null) {
+      incrementalStates.remove(pluginDir, incrementalState);
+    }
+  }
+
+  private java.util.Map<String, String> compileFiles(
+      String pluginName, List<Path> scalaFiles, long sourceBytes) throws IOException {
+    Optional<ScalaCompileResult> result = compileServer.compile(scalaFiles);
+    if (result.isPresent()) {
+      return loadCompileResult(pluginName, scalaFiles, result.get());
+    }
+
+    try (ScalaCompileScheduler.Admission admission = admit(pluginName, sourceBytes)) {
+      ScalaCompiler compiler = compilerPool.borrow();
+      try {
+        if (!compileWith(pluginName, compiler, scalaFiles, ImmutableSet.of())) {
+          throw new IOException(
+              "Invalid Scala files " + scalaFiles + "\n" + compiler.getReporter().getOutput());
+        }
+        return compiler.getTopLevelSymbols();
+      } finally {
+        if (releaseCompilerState) {
+          compilerPool.discard(compiler);
+        } else {
+          compilerPool.release(compiler);
+        }
+      }
+    }
+  }
+
+  private java.util.Map<String, String> loadCompileResult(
+      String pluginName, List<Path> scalaFiles, ScalaCompileResult result) throws IOException {
+    for (java.util.Map.Entry<String, Long> phase : result.getPhaseMillis().entrySet()) {
+      metrics.phaseLatency.record(pluginName, phase.getKey(), phase.getValue(), MILLISECONDS);
+    }
+    if (!result.isSuccess()) {
+      LOG.error("Error compiling scala files " + scalaFiles);
+      LOG.error(result.getOutput());
+      throw new IOException("Invalid Scala files " + scalaFiles + "\n" + result.getOutput());
+    }
+
+    if (!result.getOutput().isEmpty()) {
+      LOG.info("Scala files " + scalaFiles + " loaded successfully");
+      LOG.info(result.getOutput());
+    }
+    classLoader.addClassBytes(result.getClassBytes());
+    return result.getTopLevelSymbols();
+  }
+
+  private boolean compileWith(
+      String pluginName, ScalaCompiler compiler, List<Path> scalaFiles, Set<String> retainedSources)
+      throws IOException {
+    List<SourceFile> scalaSourceFiles = readScalaFiles(scalaFiles);
+    ScalaReporter reporter = compiler.getReporter();
+    boolean compiled =
+        compiler.compile(scalaSourceFiles, retainedSources, classLoader.getVirtualDirectory());
+    for (java.util.Map.Entry<String, Long> phase : compiler.getPhaseMillis().entrySet()) {
+      metrics.phaseLatency.record(pluginName, phase.getKey(), phase.getValue(), MILLISECONDS);
+    }
+    if (!compiled) {
       LOG.error("Error compiling scala files " + scalaFiles);
       LOG.error(reporter.getOutput());
-      throw new IOException("Invalid Scala files " + scalaFiles);
-    } else {
-      String output = reporter.getOutput();
-      if (output.length() > 0) {
-        LOG.info("Scala files " + scalaFiles + " loaded successfully");
-        LOG.info(output);
-      }
+      return false;
     }
 
-    for (String className : classLoader.getAllLoadedClassNames()) {
-      Class<?> clazz = classLoader.loadClass(className);
-      classes.add(clazz);
+    if (!reporter.getDiagnostics().isEmpty()) {
+      LOG.info("Scala files " + scalaFiles + " loaded successfully");
+      LOG.info(reporter.getOutput());
     }
-    return classes;
+    return true;
   }
 
-  private Seq<Object> readScalaFile(Path scalaFile) throws IOException {
-    List<String> scalaFileLines = Files.readAllLines(scalaFile, Charset.forName("UTF-8"));
-    String scalaCode = Joiner.on('\n').join(scalaFileLines);
+  private static List<SourceFile> readScalaFiles(List<Path> scalaFiles) throws IOException {
+    try {
+      return scalaFiles
+          .parallelStream()
+          .map(ScalaPluginScriptEngine::readScalaSourceFile)
+          .collect(Collectors.toList());
+    } catch (UncheckedIOException e) {
+      throw new IOException(e.getMessage(), e.getCause());
+    }
+  }
+
+  private static SourceFile readScalaSourceFile(Path scalaFile) {
+    try {
+      return new BatchSourceFile(new VirtualFile(scalaFile.toString()), readScalaFile(scalaFile));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot load scala file " + scalaFile, e);
+    }
+  }
 
-    List<Object> chars = new ArrayList<>();
-    for (char c : scalaCode.toString().toCharArray()) {
-      chars.add(Char.unbox(c));
+  /**
+   * Decodes a UTF-8 Scala source straight into the array used by the compiler, keeping its line
+   * endings. Large files are memory-mapped instead of being copied to the heap first.
+   */
+  static char[] readScalaFile(Path scalaFile) throws IOException {
+    ByteBuffer bytes;
+    if (Files.size(scalaFile) >= MAPPED_READ_THRESHOLD) {
+      try (FileChannel channel = FileChannel.open(scalaFile, StandardOpenOption.READ)) {
+        bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+    } else {
+      bytes = ByteBuffer.wrap(Files.readAllBytes(scalaFile));
     }
 
-    return asScalaBuffer(chars).toList();
+    // UTF-8 never decodes to more chars than it has bytes
+    CharBuffer chars = CharBuffer.allocate(bytes.remaining());
+    CharsetDecoder decoder = UTF_8.newDecoder();
+    CoderResult result = decoder.decode(bytes, chars, true);
+    if (!result.isError()) {
+      result = decoder.flush(chars);
+    }
+    if (result.isError()) {
+      result.throwException();
+    }
+    return chars.position() == chars.capacity()
+        ? chars.array()
+        : Arrays.copyOf(chars.array(), chars.position());
   }
 
   public ScalaClassLoader getClassLoader() {
@@ -0,0 +1,130 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/** Settings of the Scala provider, read from the plugin section of {@code gerrit.config}. */
+@Singleton
+public class ScalaProviderConfig {
+  private static final long DEFAULT_BYTECODE_CACHE_MAX_SIZE = 256 * 1024 * 1024;
+  private static final long DEFAULT_GZIP_CACHE_MAX_SIZE = 32 * 1024 * 1024;
+  private static final long DEFAULT_RESOURCE_CACHE_MAX_SIZE = 64 * 1024 * 1024;
+  private static final int DEFAULT_COMPILER_POOL_SIZE =
+      Math.min(2, Runtime.getRuntime().availableProcessors());
+  private static final int DEFAULT_COMPILER_MAX_RUNS = 50;
+  private static final int DEFAULT_EVAL_MAX_RUNS = 50;
+  private static final long DEFAULT_EVAL_TIMEOUT_MILLIS = 30 * 1000;
+  private static final long DEFAULT_EVAL_MAX_ALLOCATION = 1024 * 1024 * 1024;
+
+  private final PluginConfig config;
+
+  @Inject
+  public ScalaProviderConfig(PluginConfigFactory configFactory, @PluginName String pluginName) {
+    this(configFactory.getFromGerritConfig(pluginName));
+  }
+
+  public ScalaProviderConfig(PluginConfig config) {
+    this.config = config;
+  }
+
+  public int getCompilerPoolSize() {
+    return Math.max(1, config.getInt("compilerPoolSize", DEFAULT_COMPILER_POOL_SIZE));
+  }
+
+  public int getCompilerPoolWarmUp() {
+    return config.getInt("compilerPoolWarmUp", 1);
+  }
+
+  public int getCompilerMaxRuns() {
+    return Math.max(1, config.getInt("compilerMaxRuns", DEFAULT_COMPILER_MAX_RUNS));
+  }
+
+  public int getStartupParallelism() {
+    return config.getInt("startupParallelism", getCompilerPoolSize());
+  }
+
+  public int getMaxConcurrentCompilations() {
+    return Math.max(1, config.getInt("maxConcurrentCompilations", getCompilerPoolSize()));
+  }
+
+  public long getCompileMinFreeHeap() {
+    return config.getLong("compileMinFreeHeap", Runtime.getRuntime().maxMemory() / 10);
+  }
+
+  public boolean isReleaseCompilerState() {
+    return config.getBoolean("releaseCompilerState", false);
+  }
+
+  public boolean isPhaseMetricsEnabled() {
+    return config.getBoolean("phaseMetrics", false);
+  }
+
+  public boolean isCompileServerEnabled() {
+    return config.getBoolean("compileServer", false);
+  }
+
+  /** Returns the maximum heap size of the compile server, as a JVM option value, if set. */
+  public String getCompileServerHeapSize() {
+    return config.getString("compileServerHeapSize");
+  }
+
+  public boolean isHotReloadEnabled() {
+    return config.getBoolean("hotReload", false);
+  }
+
+  public boolean isExportInstrumentationEnabled() {
+    return config.getBoolean("instrumentExports", false);
+  }
+
+  public int getEvalPoolSize() {
+    return Math.max(0, config.getInt("evalPoolSize", 1));
+  }
+
+  public int getEvalMaxRuns() {
+    return Math.max(1, config.getInt("evalMaxRuns", DEFAULT_EVAL_MAX_RUNS));
+  }
+
+  public long getEvalTimeoutMillis() {
+    return ConfigUtil.getTimeUnit(
+        config.getString("evalTimeout"), DEFAULT_EVAL_TIMEOUT_MILLIS, MILLISECONDS);
+  }
+
+  public long getEvalMaxAllocation() {
+    return config.getLong("evalMaxAllocation", DEFAULT_EVAL_MAX_ALLOCATION);
+  }
+
+  public boolean isBytecodeCacheEnabled() {
+    return config.getBoolean("bytecodeCache", true);
+  }
+
+  public long getBytecodeCacheMaxSize() {
+    return config.getLong("bytecodeCacheMaxSize", DEFAULT_BYTECODE_CACHE_MAX_SIZE);
+  }
+
+  public long getGzipCacheMaxSize() {
+    return config.getLong("gzipCacheMaxSize", DEFAULT_GZIP_CACHE_MAX_SIZE);
+  }
+
+  public long getResourceCacheMaxSize() {
+    return config.getLong("resourceCacheMaxSize", DEFAULT_RESOURCE_CACHE_MAX_SIZE);
+  }
+}
@@ -0,0 +1,182 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import com.google.gerrit.metrics.Counter2;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.metrics.Histogram1;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer1;
+import com.google.gerrit.metrics.Timer2;
+import com.google.gerrit.server.logging.Metadata;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/** Metrics of the compilation and loading of Scala plugins, by plugin name. */
+@Singleton
+public class ScalaProviderMetrics {
+  static final String STAGE_COMPILE = "compile";
+  static final String STAGE_CLASS_DEFINITION = "class_definition";
+
+  private static final Field<String> PLUGIN_NAME =
+      Field.ofString("plugin_name", Metadata.Builder::pluginName)
+          .description("Name of the Scala plugin")
+          .build();
+
+  final Timer1<String> compileLatency;
+  final Timer1<String> queueLatency;
+  final Timer2<String, String> phaseLatency;
+  final Histogram1<String> sourceBytes;
+  final Histogram1<String> generatedClasses;
+  final Histogram1<String> bytecodeBytes;
+  final Timer1<String> classDefinitionLatency;
+  final Timer1<String> scanLatency;
+  final Counter2<String, Boolean> bytecodeCacheLookups;
+  final Counter2<String, String> failures;
+  final Counter2<String, String> exportCalls;
+  final Timer2<String, String> exportLatency;
+  final Counter2<String, String> exportErrors;
+
+  @Inject
+  ScalaProviderMetrics(
+      MetricMaker metricMaker,
+      ScalaBytecodeCache bytecodeCache,
+      ScalaCompileScheduler compileScheduler) {
+    this(metricMaker);
+    metricMaker.newCallbackMetric(
+        "compile/queue_depth",
+        Integer.class,
+        new Description("Compilations of Scala plugins waiting to start").setGauge(),
+        compileScheduler::getQueueDepth);
+    metricMaker.newCallbackMetric(
+        "bytecode_cache/hit_ratio",
+        Double.class,
+        new Description("Ratio of Scala plugin loads served from the bytecode cache").setGauge(),
+        () -> hitRatio(bytecodeCache.getHits(), bytecodeCache.getMisses()));
+  }
+
+  ScalaProviderMetrics(MetricMaker metricMaker) {
+    compileLatency =
+        metricMaker.newTimer(
+            "compile/latency",
+            new Description("Time spent compiling a Scala plugin")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            PLUGIN_NAME);
+    queueLatency =
+        metricMaker.newTimer(
+            "compile/queue_latency",
+            new Description("Time a compilation of a Scala plugin waited before starting")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            PLUGIN_NAME);
+    phaseLatency =
+        metricMaker.newTimer(
+            "compile/phase_latency",
+            new Description("Time spent in each phase of the Scala compiler")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            PLUGIN_NAME,
+            Field.ofString("phase", Field.ignoreMetadata())
+                .description("Name of the Scala compiler phase")
+                .build());
+    sourceBytes =
+        metricMaker.newHistogram(
+            "compile/source_bytes",
+            new Description("Size of the sources of a Scala plugin")
+                .setCumulative()
+                .setUnit(Units.BYTES),
+            PLUGIN_NAME);
+    generatedClasses =
+        metricMaker.newHistogram(
+            "compile/generated_classes",
+            new Description("Number of classes generated for a Scala plugin")
+                .setCumulative()
+                .setUnit("classes"),
+            PLUGIN_NAME);
+    bytecodeBytes =
+        metricMaker.newHistogram(
+            "compile/bytecode_bytes",
+            new Description("Size of the bytecode generated for a Scala plugin")
+                .setCumulative()
+                .setUnit(Units.BYTES),
+            PLUGIN_NAME);
+    classDefinitionLatency =
+        metricMaker.newTimer(
+            "load/class_definition_latency",
+            new Description("Time spent defining the classes Gerrit registers for a Scala plugin")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            PLUGIN_NAME);
+    scanLatency =
+        metricMaker.newTimer(
+            "load/scan_latency",
+            new Description("Time spent scanning a Scala plugin for its extensions")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            PLUGIN_NAME);
+    bytecodeCacheLookups =
+        metricMaker.newCounter(
+            "bytecode_cache/lookups",
+            new Description("Lookups of Scala plugins in the bytecode cache").setRate(),
+            PLUGIN_NAME,
+            Field.ofBoolean("hit", Field.ignoreMetadata())
+                .description("Whether the bytecode was found in the cache")
+                .build());
+    failures =
+        metricMaker.newCounter(
+            "load/failures",
+            new Description("Scala plugins that could not be loaded").setRate(),
+            PLUGIN_NAME,
+            Field.ofString("stage", Field.ignoreMetadata())
+                .description("Stage of the loading that failed: compile or class_definition")
+                .build());
+    exportCalls =
+        metricMaker.newCounter(
+            "exports/calls",
+            new Description("Invocations of the entry points of an exported Scala plugin class")
+                .setRate(),
+            PLUGIN_NAME,
+            exportField());
+    exportLatency =
+        metricMaker.newTimer(
+            "exports/latency",
+            new Description("Time spent in the entry points of an exported Scala plugin class")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS),
+            PLUGIN_NAME,
+            exportField());
+    exportErrors =
+        metricMaker.newCounter(
+            "exports/errors",
+            new Description(
+                    "Invocations of the entry points of an exported Scala plugin class that threw")
+                .setRate(),
+            PLUGIN_NAME,
+            exportField());
+  }
+
+  private static Field<String> exportField() {
+    return Field.ofString("export", Field.ignoreMetadata())
+        .description("Export name of the class, or simple name of a listener")
+        .build();
+  }
+
+  private static double hitRatio(long hits, long misses) {
+    long lookups = hits + misses;
+    return lookups > 0 ? (double) hits / lookups : 0;
+  }
+}
@@ -13,44 +13,155 @@
 // limitations under the License.
 package com.googlesource.gerrit.plugins.scripting.scala;
 
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import scala.tools.nsc.reporters.ConsoleReporter;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import scala.reflect.internal.util.Position;
 import scala.tools.nsc.reporters.Reporter;
 
-public class ScalaReporter {
+/**
+ * Collects the diagnostics of a compiler run.
+ *
+ * <p>Only the first {@link #MAX_DIAGNOSTICS} diagnostics of each run are kept; they are formatted
+ * when the output is asked for.
+ */
+public class ScalaReporter extends Reporter {
+  public static final int MAX_DIAGNOSTICS = 100;
 
-  private final ConsoleReporter consoleReporter;
-  private final ByteArrayOutputStream buffer;
-  private int bufferPos;
+  private final List<Diagnostic> diagnostics;
+  private int droppedDiagnostics;
+  private Consumer<String> progressListener = message -> {};
+
+  public enum Severity {
+    INFO,
+    WARNING,
+    ERROR
+  }
+
+  /** A message of the compiler, with its position in the source code. */
+  public static class Diagnostic {
+    private final Severity severity;
+    private final String file;
+    private final int line;
+    private final int column;
+    private final String message;
+
+    Diagnostic(Severity severity, String file, int line, int column, String message) {
+      this.severity = severity;
+      this.file = file;
+      this.line = line;
+      this.column = column;
+      this.message = message;
+    }
+
+    public Severity getSeverity() {
+      return severity;
+    }
+
+    /** Path of the source file, or {@code null} when the message has no position. */
+    public String getFile() {
+      return file;
+    }
+
+    /** Line number, starting from 1, or 0 when the message has no position. */
+    public int getLine() {
+      return line;
+    }
+
+    /** Column in characters, starting from 1, or 0 when the message has no position. */
+    public int getColumn() {
+      return column;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    @Override
+    public String toString() {
+      String prefix = file != null ? file + ":" + line + ":" + column + ": " : "";
+      return prefix + severity.name().toLowerCase() + ": " + message;
+    }
+  }
 
   @Inject
-  public ScalaReporter(ScalaSettings settings) {
-    buffer = new ByteArrayOutputStream();
-    consoleReporter =
-        new ConsoleReporter(
-            settings.getSettings(),
-            new BufferedReader(new InputStreamReader(System.in)),
-            new PrintWriter(buffer, true));
+  public ScalaReporter() {
+    diagnostics = Lists.newArrayList();
   }
 
-  public String getOutput() {
-    return new String(buffer.toByteArray()).substring(bufferPos);
+  @Override
+  public void info0(Position pos, String msg, Object severity, boolean force) {
+    Reporter.Severity scalaSeverity = (Reporter.Severity) severity;
+    Severity diagnosticSeverity = Severity.values()[scalaSeverity.id()];
+    if (diagnosticSeverity == Severity.INFO && !force) {
+      return;
+    }
+    if (diagnosticSeverity == Severity.INFO && isProgress(pos, msg)) {
+      progressListener.accept(msg);
+      return;
+    }
+
+    scalaSeverity.count_$eq(scalaSeverity.count() + 1);
+    if (diagnostics.size() >= MAX_DIAGNOSTICS) {
+      droppedDiagnostics++;
+      return;
+    }
+    if (pos != null && pos.isDefined()) {
+      diagnostics.add(
+          new Diagnostic(diagnosticSeverity, pos.source().path(), pos.line(), pos.column(), msg));
+    } else {
+      diagnostics.add(new Diagnostic(diagnosticSeverity, null, 0, 0, msg));
+    }
+  }
+
+  // Verbose progress messages are bracketed, like "[loaded class file X in 2ms]"
+  private static boolean isProgress(Position pos, String msg) {
+    return (pos == null || !pos.isDefined()) && msg.startsWith("[") && msg.endsWith("]");
+  }
+
+  /** Receives the verbose progress messages of the compiler, which are not kept as diagnostics. */
+  public void setProgressListener(Consumer<String> progressListener) {
+    this.progressListener = progressListener;
+  }
+
+  // The Scala compiler implements these two with bridge methods, which javac does not see.
+  @Override
+  public int count(Object severity) {
+    return count((Reporter.Severity) severity);
+  }
+
+  @Override
+  public void resetCount(Object severity) {
+    resetCount((Reporter.Severity) severity);
   }
 
+  @Override
   public void reset() {
-    consoleReporter.reset();
-    bufferPos = new String(buffer.toByteArray()).length();
+    super.reset();
+    diagnostics.clear();
+    droppedDiagnostics = 0;
   }
 
-  public boolean hasErrors() {
-    return consoleReporter.hasErrors();
+  /** Returns the diagnostics kept for the current run. */
+  public List<Diagnostic> getDiagnostics() {
+    return Collections.unmodifiableList(diagnostics);
   }
 
-  public Reporter getConsoleReporter() {
-    return consoleReporter;
+  /** Returns the number of diagnostics of the current run discarded over the limit. */
+  public int getDroppedDiagnostics() {
+    return droppedDiagnostics;
+  }
+
+  public String getOutput() {
+    StringBuilder output = new StringBuilder();
+    for (Diagnostic diagnostic : diagnostics) {
+      output.append(diagnostic).append('\n');
+    }
+    if (droppedDiagnostics > 0) {
+      output.append("... ").append(droppedDiagnostics).append(" more message(s)\n");
+    }
+    return output.toString();
   }
 }
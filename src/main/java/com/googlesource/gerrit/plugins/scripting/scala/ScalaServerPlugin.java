@@ -0,0 +1,62 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import com.google.gerrit.server.config.GerritRuntime;
+import com.google.gerrit.server.plugins.InvalidPluginException;
+import com.google.gerrit.server.plugins.PluginGuiceEnvironment;
+import com.google.gerrit.server.plugins.ServerPlugin;
+import com.google.gerrit.server.plugins.ServerPluginProvider.PluginDescription;
+import java.nio.file.Path;
+import org.eclipse.jgit.internal.storage.file.FileSnapshot;
+
+/** A loaded Scala plugin, releasing what the provider kept for it once it is unloaded. */
+class ScalaServerPlugin extends ServerPlugin {
+  private final ScalaPluginScanner scanner;
+  private final Runnable unloader;
+
+  ScalaServerPlugin(
+      String name,
+      Path srcFile,
+      FileSnapshot snapshot,
+      PluginDescription description,
+      ScalaPluginScanner scanner,
+      ClassLoader classLoader,
+      Runnable unloader)
+      throws InvalidPluginException {
+    super(
+        name,
+        description.canonicalUrl,
+        description.user,
+        srcFile,
+        snapshot,
+        scanner,
+        description.dataDir,
+        classLoader,
+        "scala/" + name,
+        GerritRuntime.DAEMON);
+    this.scanner = scanner;
+    this.unloader = unloader;
+  }
+
+  @Override
+  protected void stop(PluginGuiceEnvironment env) {
+    try {
+      super.stop(env);
+    } finally {
+      scanner.close();
+      unloader.run();
+    }
+  }
+}
@@ -13,61 +13,183 @@
 // limitations under the License.
 package com.googlesource.gerrit.plugins.scripting.scala;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.gerrit.common.Version;
 import com.google.gerrit.server.plugins.PluginLoader;
 import com.google.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import scala.Option;
-import scala.reflect.io.VirtualDirectory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import scala.tools.nsc.Settings;
 
 public class ScalaSettings {
   private static final String CLASSPATH_DEBUG = "false";
-  private static final String VERBOSE_COMPILE_OUTPUT = "false";
 
-  private VirtualDirectory virtualDirectory;
+  // Flat classpath entries of jars are cached by the compiler and shared by all its instances
+  private static final String CLASSPATH_IMPL = "flat";
+
+  // The jars of Gerrit and of this plugin do not change while the plugin is loaded
+  private static final Supplier<List<String>> CLASS_PATH_ENTRIES =
+      Suppliers.memoize(() -> classPathOf(PluginLoader.class, ScalaSettings.class));
+  private static final Supplier<String> CLASS_PATH =
+      Suppliers.memoize(() -> Joiner.on(File.pathSeparatorChar).join(CLASS_PATH_ENTRIES.get()));
+
+  // Gerrit copies its own libraries and the jar of this plugin to new temporary files on each
+  // start, so the classpath is identified by the content of its entries rather than their paths
+  private static final Supplier<String> CLASS_PATH_FINGERPRINT =
+      Suppliers.memoize(() -> fingerprintOf(CLASS_PATH_ENTRIES.get()));
+
   private final Settings settings;
 
   @Inject
   public ScalaSettings() {
+    this(false);
+  }
+
+  /**
+   * @param verbose whether the compiler reports its progress, including the time spent in each
+   *     phase; ScalaReporter keeps the progress messages apart from the diagnostics.
+   */
+  public ScalaSettings(boolean verbose) {
     settings = new Settings();
     settings.usejavacp().tryToSetFromPropertyValue("true");
     settings.exposeEmptyPackage().tryToSetFromPropertyValue("true");
     settings.Ylogcp().tryToSetFromPropertyValue(CLASSPATH_DEBUG);
-    settings.verbose().tryToSetFromPropertyValue(VERBOSE_COMPILE_OUTPUT);
+    settings.verbose().tryToSetFromPropertyValue(Boolean.toString(verbose));
     settings.feature().tryToSetFromPropertyValue("true");
+    settings.YclasspathImpl().tryToSetFromPropertyValue(CLASSPATH_IMPL);
+    settings.classpath().tryToSetFromPropertyValue(CLASS_PATH.get());
+  }
 
-    settings.outputDirs().setSingleOutput(initVirtualDirectory());
-    settings
-        .classpath()
-        .tryToSetFromPropertyValue(
-            classPathOf(PluginLoader.class) + ":" + classPathOf(this.getClass()));
+  /** Returns the classpath of Gerrit and of this plugin, as given to the compiler. */
+  public static String classPath() {
+    return CLASS_PATH.get();
   }
 
-  private VirtualDirectory initVirtualDirectory() {
-    virtualDirectory = new VirtualDirectory("(memory)", Option.apply((VirtualDirectory) null));
-    return virtualDirectory;
+  /**
+   * Returns a hash of the Gerrit and Scala versions and of the content of each entry of {@link
+   * #classPath()}, which stays the same across restarts as long as none of the jars changes.
+   *
+   * @throws IOException if an entry of the classpath cannot be read.
+   */
+  public static String classPathFingerprint() throws IOException {
+    try {
+      return CLASS_PATH_FINGERPRINT.get();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
   }
 
-  private String classPathOf(Class<?> clazz) {
-    StringBuilder currentClassPath = new StringBuilder();
-    for (URL url : ((URLClassLoader) (clazz.getClassLoader())).getURLs()) {
-      if (url.getProtocol().equals("file")) {
-        if (currentClassPath.length() > 0) {
-          currentClassPath.append(":");
+  static String fingerprintOf(List<String> classPathEntries) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(Strings.nullToEmpty(Version.getVersion()), UTF_8);
+    hasher.putString(scala.tools.nsc.Properties.versionString(), UTF_8);
+    try {
+      for (String entry : classPathEntries) {
+        Path path = Paths.get(entry);
+        if (Files.isRegularFile(path)) {
+          hasher.putChar('f');
+          putContent(hasher, path);
+        } else if (Files.isDirectory(path)) {
+          hasher.putChar('d');
+          putTree(hasher, path);
         }
-        currentClassPath.append(url.getPath());
       }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read the Scala compiler classpath", e);
     }
-    String currentClassPathString = currentClassPath.toString();
-    return currentClassPathString;
+    return hasher.hash().toString();
   }
 
-  public Settings getSettings() {
-    return settings;
+  private static void putTree(Hasher hasher, Path dir) throws IOException {
+    List<Path> files;
+    try (Stream<Path> tree = Files.walk(dir)) {
+      files = tree.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    for (Path file : files) {
+      hasher.putString(dir.relativize(file).toString(), UTF_8);
+      putContent(hasher, file);
+    }
   }
 
-  public VirtualDirectory getVirtualDirectory() {
-    return virtualDirectory;
+  private static void putContent(Hasher hasher, Path file) throws IOException {
+    hasher.putLong(Files.size(file));
+    try (InputStream in = Files.newInputStream(file)) {
+      ByteStreams.copy(in, Funnels.asOutputStream(hasher));
+    }
+  }
+
+  /**
+   * Lists the jars and directories the given classes can see, through the chain of their class
+   * loaders. The system class loader, which is not a {@link URLClassLoader} since Java 9, is
+   * described by {@code java.class.path}; for other class loaders only the location of the class
+   * itself is known. The classes of the JDK are left to the compiler: Scala 2.11 reads them from
+   * the boot classpath and cannot read the {@code jrt:} image of newer JVMs.
+   */
+  private static List<String> classPathOf(Class<?>... classes) {
+    Set<String> entries = Sets.newLinkedHashSet();
+    ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+    for (Class<?> clazz : classes) {
+      boolean found = false;
+      for (ClassLoader loader = clazz.getClassLoader();
+          loader != null;
+          loader = loader.getParent()) {
+        if (loader instanceof URLClassLoader) {
+          for (URL url : ((URLClassLoader) loader).getURLs()) {
+            addEntry(entries, url);
+          }
+          found = true;
+        } else if (loader == systemClassLoader) {
+          entries.addAll(
+              Splitter.on(File.pathSeparatorChar)
+                  .omitEmptyStrings()
+                  .splitToList(System.getProperty("java.class.path")));
+          found = true;
+        }
+      }
+      CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+      if (!found && codeSource != null && codeSource.getLocation() != null) {
+        addEntry(entries, codeSource.getLocation());
+      }
+    }
+    return ImmutableList.copyOf(entries);
+  }
+
+  private static void addEntry(Set<String> entries, URL url) {
+    if (url.getProtocol().equals("file")) {
+      try {
+        entries.add(Paths.get(url.toURI()).toString());
+      } catch (URISyntaxException | IllegalArgumentException e) {
+        entries.add(url.getPath());
+      }
+    }
+  }
+
+  public Settings getSettings() {
+    return settings;
   }
 }
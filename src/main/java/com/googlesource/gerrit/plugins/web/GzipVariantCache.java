@@ -0,0 +1,131 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.web;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compressed variants of the compressible web resources of all plugins, compressed on first
+ * access and kept within a budget of compressed bytes.
+ *
+ * <p>A variant is compressed again when the modification time or the size of its source changed.
+ * Variants are served as {@code .gz} files of type {@code application/gzip}: Gerrit's plugin
+ * servlet does not negotiate {@code Accept-Encoding}, so only a client or proxy asking for the
+ * {@code .gz} path gets the compressed content.
+ */
+public class GzipVariantCache {
+  public static final String GZIP_EXTENSION = ".gz";
+  public static final String GZIP_CONTENT_TYPE = "application/gzip";
+
+  private static final long MIN_SOURCE_SIZE = 256;
+  private static final ImmutableSet<String> COMPRESSIBLE_EXTENSIONS =
+      ImmutableSet.of("css", "htm", "html", "js", "json", "map", "svg", "txt", "xml");
+
+  private final long maxSize;
+  private final Cache<Path, Variant> variants;
+  private final AtomicLong sourceBytes = new AtomicLong();
+  private final AtomicLong compressedBytes = new AtomicLong();
+
+  private static class Variant {
+    final long sourceLastModified;
+    final long sourceSize;
+    final byte[] content;
+
+    Variant(long sourceLastModified, long sourceSize, byte[] content) {
+      this.sourceLastModified = sourceLastModified;
+      this.sourceSize = sourceSize;
+      this.content = content;
+    }
+  }
+
+  /** @param maxSize maximum number of compressed bytes kept; {@code 0} disables the variants. */
+  public GzipVariantCache(long maxSize) {
+    this.maxSize = Math.max(0, maxSize);
+    this.variants =
+        CacheBuilder.newBuilder()
+            .maximumWeight(this.maxSize)
+            .weigher((Path source, Variant variant) -> variant.content.length)
+            .build();
+  }
+
+  /** Returns whether the resource has a gzip variant. */
+  public boolean hasVariant(String resourcePath, long size) {
+    if (size < MIN_SOURCE_SIZE || size > maxSize) {
+      return false;
+    }
+    String extension = resourcePath.substring(resourcePath.lastIndexOf('.') + 1);
+    return COMPRESSIBLE_EXTENSIONS.contains(extension);
+  }
+
+  /**
+   * Returns the gzip variant of a source, compressing it when missing or out of date.
+   *
+   * @param source identifies the source across all plugins.
+   */
+  public byte[] get(Path source, long lastModified, long size, ByteSource content)
+      throws IOException {
+    Variant variant = variants.getIfPresent(source);
+    if (variant != null
+        && variant.sourceLastModified == lastModified
+        && variant.sourceSize == size) {
+      return variant.content;
+    }
+
+    byte[] sourceContent = content.read();
+    byte[] compressed = compress(sourceContent);
+    sourceBytes.addAndGet(sourceContent.length);
+    compressedBytes.addAndGet(compressed.length);
+    if (sourceContent.length == size) {
+      variants.put(source, new Variant(lastModified, size, compressed));
+    }
+    return compressed;
+  }
+
+  private static byte[] compress(byte[] content) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 4);
+    try (GZIPOutputStream out =
+        new GZIPOutputStream(compressed) {
+          {
+            def.setLevel(Deflater.BEST_COMPRESSION);
+          }
+        }) {
+      out.write(content);
+    }
+    return compressed.toByteArray();
+  }
+
+  /** Returns the number of source bytes compressed since startup. */
+  public long getSourceBytes() {
+    return sourceBytes.get();
+  }
+
+  /** Returns the number of bytes produced by the compressions since startup. */
+  public long getCompressedBytes() {
+    return compressedBytes.get();
+  }
+
+  /** Returns the number of compressed bytes currently kept in the cache. */
+  public long getCachedBytes() {
+    return variants.asMap().values().stream().mapToLong(v -> v.content.length).sum();
+  }
+}
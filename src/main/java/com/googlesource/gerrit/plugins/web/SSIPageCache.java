@@ -0,0 +1,221 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.web;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * SSI pages of a plugin, compiled once and cached once rendered.
+ *
+ * <p>A rendered page stays valid as long as no file of its include graph changed: a file whose
+ * modification time changed is read again, and the page is only rendered again when its content
+ * hash differs.
+ */
+public class SSIPageCache {
+  private final Path basePath;
+  private final Map<Path, CompiledFile> compiledFiles = Maps.newConcurrentMap();
+  private final Map<Path, RenderedPage> renderedPages = Maps.newConcurrentMap();
+
+  private static class CompiledFile {
+    final FileTime lastModified;
+    final HashCode hash;
+    final SSITemplate template;
+
+    CompiledFile(FileTime lastModified, HashCode hash, SSITemplate template) {
+      this.lastModified = lastModified;
+      this.hash = hash;
+      this.template = template;
+    }
+  }
+
+  /** An SSI page with all its includes expanded. */
+  public static class RenderedPage {
+    private final byte[] content;
+    private final long lastModified;
+    private final Map<Path, HashCode> dependencies;
+
+    private RenderedPage(byte[] content, long lastModified, Map<Path, HashCode> dependencies) {
+      this.content = content;
+      this.lastModified = lastModified;
+      this.dependencies = dependencies;
+    }
+
+    public long size() {
+      return content.length;
+    }
+
+    /** Returns the most recent modification time of the files of the page, in milliseconds. */
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    public InputStream openStream() {
+      return new ByteArrayInputStream(content);
+    }
+
+    public ByteSource asByteSource() {
+      return ByteSource.wrap(content);
+    }
+  }
+
+  public SSIPageCache(Path basePath) {
+    this.basePath = basePath;
+  }
+
+  public RenderedPage get(String pagePath) throws IOException {
+    Path page = basePath.resolve(pagePath).normalize();
+    RenderedPage renderedPage = renderedPages.get(page);
+    if (renderedPage != null && isUpToDate(renderedPage)) {
+      return renderedPage;
+    }
+
+    renderedPage = render(page);
+    renderedPages.put(page, renderedPage);
+    return renderedPage;
+  }
+
+  private boolean isUpToDate(RenderedPage renderedPage) throws IOException {
+    for (Map.Entry<Path, HashCode> dependency : renderedPage.dependencies.entrySet()) {
+      try {
+        if (!compile(dependency.getKey()).hash.equals(dependency.getValue())) {
+          return false;
+        }
+      } catch (NoSuchFileException e) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private RenderedPage render(Path page) throws IOException {
+    Map<Path, CompiledFile> includeGraph = Maps.newHashMap();
+    collectIncludes(page, new LinkedHashSet<>(), includeGraph);
+
+    Map<Path, Integer> sizes = Maps.newHashMap();
+    byte[] content = new byte[sizeOf(page, includeGraph, sizes)];
+    int written = renderTo(page, includeGraph, content, 0);
+    if (written != content.length) {
+      throw new IOException("Inconsistent rendering of SSI page " + page);
+    }
+
+    long lastModified = 0;
+    for (CompiledFile compiledFile : includeGraph.values()) {
+      lastModified = Math.max(lastModified, compiledFile.lastModified.toMillis());
+    }
+    return new RenderedPage(
+        content,
+        lastModified,
+        ImmutableMap.copyOf(
+            includeGraph.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().hash))));
+  }
+
+  private void collectIncludes(
+      Path file, LinkedHashSet<Path> includeChain, Map<Path, CompiledFile> includeGraph)
+      throws IOException {
+    if (!includeChain.add(file)) {
+      throw new IOException(
+          "Cycle of SSI includes: "
+              + includeChain.stream()
+                  .map(p -> basePath.relativize(p).toString())
+                  .collect(Collectors.joining(" -> "))
+              + " -> "
+              + basePath.relativize(file));
+    }
+    if (!includeGraph.containsKey(file)) {
+      CompiledFile compiledFile = compile(file);
+      includeGraph.put(file, compiledFile);
+      for (SSITemplate.Segment segment : compiledFile.template.getSegments()) {
+        if (segment.isInclude()) {
+          if (!Files.isRegularFile(segment.include)) {
+            throw new IOException(
+                "Cannot find file '"
+                    + basePath.relativize(segment.include)
+                    + "' included in "
+                    + file.getFileName()
+                    + ":"
+                    + segment.lineNr);
+          }
+          collectIncludes(segment.include, includeChain, includeGraph);
+        }
+      }
+    }
+    includeChain.remove(file);
+  }
+
+  private int sizeOf(Path file, Map<Path, CompiledFile> includeGraph, Map<Path, Integer> sizes)
+      throws IOException {
+    Integer size = sizes.get(file);
+    if (size == null) {
+      long total = 0;
+      for (SSITemplate.Segment segment : includeGraph.get(file).template.getSegments()) {
+        total +=
+            segment.isInclude() ? sizeOf(segment.include, includeGraph, sizes) : segment.length;
+      }
+      if (total > Integer.MAX_VALUE - 8) {
+        throw new IOException("SSI page " + file + " is too large");
+      }
+      size = (int) total;
+      sizes.put(file, size);
+    }
+    return size;
+  }
+
+  private static int renderTo(
+      Path file, Map<Path, CompiledFile> includeGraph, byte[] out, int pos) {
+    SSITemplate template = includeGraph.get(file).template;
+    for (SSITemplate.Segment segment : template.getSegments()) {
+      if (segment.isInclude()) {
+        pos = renderTo(segment.include, includeGraph, out, pos);
+      } else {
+        System.arraycopy(template.getContent(), segment.offset, out, pos, segment.length);
+        pos += segment.length;
+      }
+    }
+    return pos;
+  }
+
+  private CompiledFile compile(Path file) throws IOException {
+    FileTime lastModified = Files.getLastModifiedTime(file);
+    CompiledFile compiledFile = compiledFiles.get(file);
+    if (compiledFile != null && compiledFile.lastModified.equals(lastModified)) {
+      return compiledFile;
+    }
+
+    byte[] content = Files.readAllBytes(file);
+    HashCode hash = Hashing.sha256().hashBytes(content);
+    if (compiledFile != null && compiledFile.hash.equals(hash)) {
+      compiledFile = new CompiledFile(lastModified, hash, compiledFile.template);
+    } else {
+      compiledFile =
+          new CompiledFile(lastModified, hash, SSITemplate.compile(basePath, file, content));
+    }
+    compiledFiles.put(file, compiledFile);
+    return compiledFile;
+  }
+}
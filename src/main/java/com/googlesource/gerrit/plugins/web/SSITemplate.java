@@ -0,0 +1,164 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.web;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * An SSI page parsed once into literal byte ranges and {@code <!--#include virtual="..." -->}
+ * references.
+ *
+ * <p>Include directives are only recognized at the beginning of a line; the rest of the line after
+ * the directive is kept as literal content.
+ */
+class SSITemplate {
+  private static final byte[] INCLUDE_VIRTUAL_PREFIX = "<!--#include virtual=\"".getBytes(UTF_8);
+  private static final byte[] INCLUDE_VIRTUAL_SUFFIX = " -->".getBytes(UTF_8);
+
+  private final Path file;
+  private final byte[] content;
+  private final List<Segment> segments;
+
+  /** Either a range of literal bytes of the page, or an include of another page. */
+  static class Segment {
+    final int offset;
+    final int length;
+    final Path include;
+    final int lineNr;
+
+    private Segment(int offset, int length, Path include, int lineNr) {
+      this.offset = offset;
+      this.length = length;
+      this.include = include;
+      this.lineNr = lineNr;
+    }
+
+    boolean isInclude() {
+      return include != null;
+    }
+  }
+
+  /**
+   * @param basePath root of the web resources, against which includes starting with '/' are
+   *     resolved.
+   * @param file the page.
+   * @param content the bytes of the page, which are not copied.
+   */
+  static SSITemplate compile(Path basePath, Path file, byte[] content) throws IOException {
+    ImmutableList.Builder<Segment> segments = ImmutableList.builder();
+    int literalStart = 0;
+    int lineNr = 1;
+    int pos = 0;
+    while (pos < content.length) {
+      if (startsWith(content, pos, INCLUDE_VIRTUAL_PREFIX)) {
+        int nameStart = pos + INCLUDE_VIRTUAL_PREFIX.length;
+        int nameEnd = nameStart;
+        while (nameEnd < content.length
+            && content[nameEnd] != '"'
+            && !isNewLine(content[nameEnd])) {
+          nameEnd++;
+        }
+        if (nameEnd >= content.length
+            || content[nameEnd] != '"'
+            || !startsWith(content, nameEnd + 1, INCLUDE_VIRTUAL_SUFFIX)) {
+          throw new IOException(
+              "Invalid SHTML include directive in " + file.getFileName() + ":" + lineNr);
+        }
+
+        if (pos > literalStart) {
+          segments.add(new Segment(literalStart, pos - literalStart, null, lineNr));
+        }
+        String includeName = new String(content, nameStart, nameEnd - nameStart, UTF_8);
+        segments.add(new Segment(pos, 0, resolve(basePath, file, includeName, lineNr), lineNr));
+        pos = nameEnd + 1 + INCLUDE_VIRTUAL_SUFFIX.length;
+        literalStart = pos;
+      }
+
+      // Skip to the beginning of the next line
+      while (pos < content.length && !isNewLine(content[pos])) {
+        pos++;
+      }
+      while (pos < content.length && isNewLine(content[pos])) {
+        if (content[pos] == '\n') {
+          lineNr++;
+        }
+        pos++;
+      }
+    }
+    if (content.length > literalStart) {
+      segments.add(new Segment(literalStart, content.length - literalStart, null, lineNr));
+    }
+    return new SSITemplate(file, content, segments.build());
+  }
+
+  private static Path resolve(Path basePath, Path file, String includeName, int lineNr)
+      throws IOException {
+    Path includeFile =
+        includeName.startsWith("/")
+            ? basePath.resolve(includeName.substring(1))
+            : file.getParent().resolve(includeName);
+    includeFile = includeFile.normalize();
+    if (!includeFile.startsWith(basePath.normalize())) {
+      throw new IOException(
+          "File '"
+              + includeName
+              + "' included in "
+              + file.getFileName()
+              + ":"
+              + lineNr
+              + " is outside of "
+              + basePath);
+    }
+    return includeFile;
+  }
+
+  private static boolean startsWith(byte[] content, int pos, byte[] prefix) {
+    if (content.length - pos < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (content[pos + i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isNewLine(byte b) {
+    return b == '\r' || b == '\n';
+  }
+
+  private SSITemplate(Path file, byte[] content, List<Segment> segments) {
+    this.file = file;
+    this.content = content;
+    this.segments = segments;
+  }
+
+  Path getFile() {
+    return file;
+  }
+
+  byte[] getContent() {
+    return content;
+  }
+
+  List<Segment> getSegments() {
+    return segments;
+  }
+}
@@ -13,34 +13,69 @@
 // limitations under the License.
 package com.googlesource.gerrit.plugins.web;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteSource;
+import com.google.common.io.MoreFiles;
 import com.google.gerrit.server.plugins.InvalidPluginException;
 import com.google.gerrit.server.plugins.PluginContentScanner;
 import com.google.gerrit.server.plugins.PluginEntry;
 import com.google.inject.Inject;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
-import java.nio.file.FileVisitOption;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collections;
-import java.util.EnumSet;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.jar.Manifest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class WebPluginScanner implements PluginContentScanner {
+  private static final Logger LOG = LoggerFactory.getLogger(WebPluginScanner.class);
+
   private final Path staticResourcesPath;
+  private final SSIPageCache ssiPages;
+  private final GzipVariantCache gzipVariants;
+  private final WebResourceCache resourceContents;
+  private final WebResourceIndex index;
+  private final Map<String, IndexedEntry> pageEntries = Maps.newConcurrentMap();
+
+  /** Entry of an SSI page, valid as long as the index has not changed. */
+  private static class IndexedEntry {
+    final long indexVersion;
+    final PluginEntry entry;
+
+    IndexedEntry(long indexVersion, PluginEntry entry) {
+      this.indexVersion = indexVersion;
+      this.entry = entry;
+    }
+  }
 
   @Inject
   public WebPluginScanner(Path rootDir) {
+    this(rootDir, new GzipVariantCache(0), new WebResourceCache(0));
+  }
+
+  public WebPluginScanner(
+      Path rootDir, GzipVariantCache gzipVariants, WebResourceCache resourceContents) {
     this.staticResourcesPath = rootDir;
+    this.ssiPages = new SSIPageCache(rootDir);
+    this.gzipVariants = gzipVariants;
+    this.resourceContents = resourceContents;
+    this.index = new WebResourceIndex(rootDir);
+  }
+
+  /** Stops watching the resource files, once the plugin is unloaded. */
+  public void close() {
+    index.close();
   }
 
   @Override
@@ -55,30 +90,92 @@ public class WebPluginScanner implements PluginContentScanner {
     return Collections.emptyMap();
   }
 
+  /**
+   * Entries carry no entity tag: Gerrit's plugin servlet only validates conditional requests with
+   * If-Modified-Since against the time of the entry. The time of an SSI page is the latest
+   * modification time of its include graph, so an edited include still makes clients fetch the page
+   * again.
+   */
   @Override
   public Optional<PluginEntry> getEntry(String resourcePath) throws IOException {
-    Path resourceFile = getResourceFile(resourcePath);
-    if (Files.exists(resourceFile) && Files.size(resourceFile) > 0) {
-      return resourceOf(resourcePath);
+    WebResourceIndex.Resource resource = index.get(resourcePath);
+    if (resource != null) {
+      return Optional.of(entryOf(resource));
+    } else if (resourcePath.endsWith(GzipVariantCache.GZIP_EXTENSION)) {
+      return gzipVariantOf(resourcePath);
     } else {
       return Optional.empty();
     }
   }
 
-  private Optional<PluginEntry> resourceOf(String resourcePath) throws IOException {
-    Path file = getResourceFile(resourcePath);
-    long fileSize = Files.size(file);
-    if (Files.exists(file) && fileSize > 0) {
-      long fileLastModifiedTimeMillis = Files.getLastModifiedTime(file).toMillis();
-      if (resourcePath.endsWith("html")) {
-        return Optional.of(new PluginEntry(resourcePath, fileLastModifiedTimeMillis));
-      } else {
-        return Optional.of(
-            new PluginEntry(resourcePath, fileLastModifiedTimeMillis, Optional.of(fileSize)));
-      }
-    } else {
+  private PluginEntry entryOf(WebResourceIndex.Resource resource) {
+    if (resource.type == WebResourceIndex.Type.SSI_PAGE) {
+      return pageEntryOf(resource);
+    }
+    return new PluginEntry(resource.name, resource.lastModified, Optional.of(resource.size));
+  }
+
+  private Optional<PluginEntry> gzipVariantOf(String variantPath) throws IOException {
+    Optional<PluginEntry> source = gzipSourceOf(variantPath);
+    if (!source.isPresent()) {
+      return Optional.empty();
+    }
+
+    long size = gzipContentOf(source.get()).length;
+    // Served as a file of its own: Gerrit's plugin servlet sets no Content-Encoding header
+    return Optional.of(
+        new PluginEntry(
+            variantPath,
+            source.get().getTime(),
+            Optional.of(size),
+            ImmutableMap.of(PluginEntry.ATTR_CONTENT_TYPE, GzipVariantCache.GZIP_CONTENT_TYPE)));
+  }
+
+  private Optional<PluginEntry> gzipSourceOf(String variantPath) {
+    String sourcePath =
+        variantPath.substring(0, variantPath.length() - GzipVariantCache.GZIP_EXTENSION.length());
+    WebResourceIndex.Resource resource = index.get(sourcePath);
+    if (resource == null) {
       return Optional.empty();
     }
+    PluginEntry source = entryOf(resource);
+    Optional<Long> size = source.getSize();
+    if (!size.isPresent() || !gzipVariants.hasVariant(source.getName(), size.get())) {
+      return Optional.empty();
+    }
+    return Optional.of(source);
+  }
+
+  private byte[] gzipContentOf(PluginEntry source) throws IOException {
+    String name = source.getName();
+    ByteSource content =
+        name.endsWith("html")
+            ? ssiPages.get(name).asByteSource()
+            : MoreFiles.asByteSource(getResourceFile(name));
+    return gzipVariants.get(
+        getResourceFile(name).toAbsolutePath(), source.getTime(), source.getSize().get(), content);
+  }
+
+  private PluginEntry pageEntryOf(WebResourceIndex.Resource page) {
+    long version = index.getVersion();
+    IndexedEntry indexedEntry = pageEntries.get(page.name);
+    if (indexedEntry != null && indexedEntry.indexVersion == version) {
+      return indexedEntry.entry;
+    }
+
+    PluginEntry entry;
+    try {
+      SSIPageCache.RenderedPage renderedPage = ssiPages.get(page.name);
+      entry =
+          new PluginEntry(
+              page.name, renderedPage.getLastModified(), Optional.of(renderedPage.size()));
+    } catch (IOException e) {
+      // Reported again when the page is read
+      LOG.warn("Cannot render SSI page " + page.name + ": " + e.getMessage());
+      entry = new PluginEntry(page.name, page.lastModified);
+    }
+    pageEntries.put(page.name, new IndexedEntry(version, entry));
+    return entry;
   }
 
   private Path getResourceFile(String resourcePath) {
@@ -89,39 +186,32 @@ public class WebPluginScanner implements PluginContentScanner {
   public InputStream getInputStream(PluginEntry entry) throws IOException {
     String name = entry.getName();
     if (name.endsWith("html")) {
-      return new SSIPageInputStream(staticResourcesPath, name);
-    } else {
-      return Files.newInputStream(getResourceFile(name));
+      return ssiPages.get(name).openStream();
+    }
+
+    WebResourceIndex.Resource resource = index.get(name);
+    if (resource != null) {
+      return openStaticResource(resource);
+    } else if (name.endsWith(GzipVariantCache.GZIP_EXTENSION)) {
+      Optional<PluginEntry> source = gzipSourceOf(name);
+      if (!source.isPresent()) {
+        throw new NoSuchFileException(name);
+      }
+      return new ByteArrayInputStream(gzipContentOf(source.get()));
     }
+    return Files.newInputStream(getResourceFile(name));
+  }
+
+  private InputStream openStaticResource(WebResourceIndex.Resource resource) throws IOException {
+    return resourceContents.open(
+        getResourceFile(resource.name).toAbsolutePath(), resource.lastModified, resource.size);
   }
 
   @Override
   public Enumeration<PluginEntry> entries() {
-    final List<PluginEntry> resourcesList = Lists.newArrayList();
-    try {
-      Files.walkFileTree(
-          staticResourcesPath,
-          EnumSet.of(FileVisitOption.FOLLOW_LINKS),
-          Integer.MAX_VALUE,
-          new SimpleFileVisitor<Path>() {
-            private int basicPathLength = staticResourcesPath.toAbsolutePath().toString().length();
-
-            @Override
-            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs)
-                throws IOException {
-              Optional<PluginEntry> resource = resourceOf(relativePathOf(path));
-              if (resource.isPresent()) {
-                resourcesList.add(resource.get());
-              }
-              return FileVisitResult.CONTINUE;
-            }
-
-            private String relativePathOf(Path path) {
-              return path.toFile().getAbsolutePath().substring(basicPathLength);
-            }
-          });
-    } catch (IOException e) {
-      throw new IllegalArgumentException("Cannot scan resource files in plugin", e);
+    List<PluginEntry> resourcesList = Lists.newArrayList();
+    for (WebResourceIndex.Resource resource : index.snapshot()) {
+      resourcesList.add(entryOf(resource));
     }
     return Collections.enumeration(resourcesList);
   }
@@ -0,0 +1,133 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.web;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Content of the recently read static web resources of all plugins, within a budget of bytes.
+ *
+ * <p>Small files are kept on the heap and larger ones are memory-mapped. An entry is read again
+ * when the modification time or the size of its file changed.
+ */
+public class WebResourceCache {
+  static final long MAPPED_MIN_SIZE = 64 * 1024;
+
+  private final long maxSize;
+  private final Cache<Path, Content> contents;
+
+  private static class Content {
+    final long lastModified;
+    final ByteBuffer buffer;
+
+    Content(long lastModified, ByteBuffer buffer) {
+      this.lastModified = lastModified;
+      this.buffer = buffer;
+    }
+  }
+
+  /** @param maxSize maximum number of bytes kept; {@code 0} disables the cache. */
+  public WebResourceCache(long maxSize) {
+    this.maxSize = Math.max(0, Math.min(maxSize, Integer.MAX_VALUE));
+    this.contents =
+        CacheBuilder.newBuilder()
+            .maximumWeight(this.maxSize)
+            .weigher((Path file, Content content) -> content.buffer.capacity())
+            .build();
+  }
+
+  /**
+   * Opens a file, from the cache when its content is there and up to date.
+   *
+   * @param lastModified modification time of the file in milliseconds, as last known.
+   * @param size size of the file, as last known.
+   */
+  public InputStream open(Path file, long lastModified, long size) throws IOException {
+    if (size > maxSize) {
+      return Files.newInputStream(file);
+    }
+
+    Content content = contents.getIfPresent(file);
+    if (content == null
+        || content.lastModified != lastModified
+        || content.buffer.capacity() != size) {
+      content = new Content(lastModified, read(file));
+      if (content.buffer.capacity() == size) {
+        contents.put(file, content);
+      }
+    }
+    return new ByteBufferInputStream(content.buffer.duplicate());
+  }
+
+  private static ByteBuffer read(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size >= MAPPED_MIN_SIZE) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      }
+      ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // Read until the buffer is full or the file ends
+      }
+      buffer.flip();
+      return buffer.slice();
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(len, buffer.remaining());
+      buffer.get(b, off, count);
+      return count;
+    }
+
+    @Override
+    public long skip(long n) {
+      int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -0,0 +1,299 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.web;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Size, modification time and type of the web resources of a plugin, kept in memory.
+ *
+ * <p>The index is built on first use and then kept up to date with a {@link WatchService}, whose
+ * events are applied on access. The whole tree is scanned again periodically, and whenever the
+ * watcher lost events or is not available for the file system. The watcher is closed by {@link
+ * #close} when the plugin is unloaded; the index then falls back to periodic scans.
+ */
+class WebResourceIndex {
+  private static final Logger LOG = LoggerFactory.getLogger(WebResourceIndex.class);
+  private static final Cleaner WATCHERS_CLEANER = Cleaner.create();
+
+  static final long RESCAN_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(5);
+  static final long UNWATCHED_RESCAN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  enum Type {
+    STATIC,
+    SSI_PAGE
+  }
+
+  static class Resource {
+    final String name;
+    final long size;
+    final long lastModified;
+    final Type type;
+
+    private Resource(String name, long size, long lastModified) {
+      this.name = name;
+      this.size = size;
+      this.lastModified = lastModified;
+      this.type = name.endsWith("html") ? Type.SSI_PAGE : Type.STATIC;
+    }
+  }
+
+  private final Path rootDir;
+  private final AtomicLong version = new AtomicLong();
+  private final Map<WatchKey, Path> watchedDirs = Maps.newConcurrentMap();
+  private volatile Map<String, Resource> resources;
+  private volatile long lastScanNanos;
+  private volatile WatchService watcher;
+  private Cleaner.Cleanable watcherCloser;
+  private boolean closed;
+
+  WebResourceIndex(Path rootDir) {
+    this.rootDir = rootDir;
+  }
+
+  /** Returns the non-empty resource file at the given path, relative to the root directory. */
+  Resource get(String resourcePath) {
+    return refresh().get(resourcePath);
+  }
+
+  ImmutableList<Resource> snapshot() {
+    return ImmutableList.copyOf(refresh().values());
+  }
+
+  /** Returns a number that changes whenever a resource is added, changed or removed. */
+  long getVersion() {
+    return version.get();
+  }
+
+  private Map<String, Resource> refresh() {
+    Map<String, Resource> current = resources;
+    WatchService currentWatcher = watcher;
+    long rescanInterval =
+        currentWatcher != null ? RESCAN_INTERVAL_NANOS : UNWATCHED_RESCAN_INTERVAL_NANOS;
+    if (current == null || System.nanoTime() - lastScanNanos > rescanInterval) {
+      return rescan(current);
+    }
+
+    try {
+      for (WatchKey key = currentWatcher != null ? currentWatcher.poll() : null;
+          key != null;
+          key = currentWatcher.poll()) {
+        if (!applyEvents(key)) {
+          return rescan(current);
+        }
+      }
+    } catch (ClosedWatchServiceException e) {
+      // Closed in the meantime
+      return rescan(current);
+    }
+    return resources;
+  }
+
+  private synchronized Map<String, Resource> rescan(Map<String, Resource> previous) {
+    if (resources != previous) {
+      // Another thread scanned in the meantime
+      return resources;
+    }
+
+    Map<String, Resource> scanned = Maps.newConcurrentMap();
+    if (Files.isDirectory(rootDir)) {
+      startWatching();
+      // Changes notified until now are covered by the scan
+      for (WatchKey key = watcher != null ? watcher.poll() : null;
+          key != null;
+          key = watcher.poll()) {
+        key.pollEvents();
+        resetKey(key);
+      }
+      try {
+        scan(rootDir, scanned);
+      } catch (IOException e) {
+        LOG.warn("Cannot scan resource files in " + rootDir, e);
+        if (previous != null) {
+          scanned = previous;
+        }
+      }
+    }
+    lastScanNanos = System.nanoTime();
+    resources = scanned;
+    version.incrementAndGet();
+    return scanned;
+  }
+
+  /** Stops watching the resource files. */
+  synchronized void close() {
+    closed = true;
+    if (watcher != null) {
+      watcher = null;
+      watchedDirs.clear();
+      watcherCloser.clean();
+    }
+  }
+
+  private void startWatching() {
+    if (watcher != null || closed) {
+      return;
+    }
+    try {
+      watcher = rootDir.getFileSystem().newWatchService();
+      // Closes the watcher of an index that is dropped without being closed
+      watcherCloser = WATCHERS_CLEANER.register(this, new WatcherCloser(watcher));
+    } catch (IOException | UnsupportedOperationException e) {
+      LOG.warn(
+          "Cannot watch resource files in "
+              + rootDir
+              + ", they are scanned every "
+              + TimeUnit.NANOSECONDS.toSeconds(UNWATCHED_RESCAN_INTERVAL_NANOS)
+              + " seconds: "
+              + e.getMessage());
+    }
+  }
+
+  private void scan(Path dir, Map<String, Resource> scanned) throws IOException {
+    Files.walkFileTree(
+        dir,
+        EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+        Integer.MAX_VALUE,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path subDir, BasicFileAttributes attrs)
+              throws IOException {
+            watch(subDir);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            put(scanned, file, attrs);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  private void watch(Path dir) throws IOException {
+    if (watcher != null) {
+      watchedDirs.put(dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+    }
+  }
+
+  /** Returns false when events were lost and the whole tree needs to be scanned again. */
+  private synchronized boolean applyEvents(WatchKey key) {
+    Path dir = watchedDirs.get(key);
+    Map<String, Resource> current = resources;
+    if (dir == null) {
+      key.cancel();
+      return true;
+    }
+
+    boolean complete = true;
+    try {
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == OVERFLOW) {
+          complete = false;
+          continue;
+        }
+
+        Path path = dir.resolve((Path) event.context());
+        String name = nameOf(path);
+        if (event.kind() == ENTRY_DELETE) {
+          current.remove(name);
+          current.keySet().removeIf(n -> n.startsWith(name + "/"));
+        } else if (Files.isDirectory(path)) {
+          if (event.kind() == ENTRY_CREATE) {
+            scan(path, current);
+          }
+        } else {
+          try {
+            put(current, path, Files.readAttributes(path, BasicFileAttributes.class));
+          } catch (NoSuchFileException e) {
+            current.remove(name);
+          }
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot update the index of resource files in " + dir, e);
+      complete = false;
+    } finally {
+      version.incrementAndGet();
+    }
+    return resetKey(key) && complete;
+  }
+
+  private boolean resetKey(WatchKey key) {
+    if (key.reset()) {
+      return true;
+    }
+    // The directory is gone and its files were removed on the event of its parent, unless it is
+    // the root directory itself
+    return !rootDir.equals(watchedDirs.remove(key));
+  }
+
+  private void put(Map<String, Resource> index, Path file, BasicFileAttributes attrs) {
+    String name = nameOf(file);
+    if (attrs.isRegularFile() && attrs.size() > 0) {
+      index.put(name, new Resource(name, attrs.size(), attrs.lastModifiedTime().toMillis()));
+    } else {
+      index.remove(name);
+    }
+  }
+
+  private String nameOf(Path file) {
+    Path relativePath = rootDir.relativize(file);
+    String separator = relativePath.getFileSystem().getSeparator();
+    String name = relativePath.toString();
+    return separator.equals("/") ? name : name.replace(separator, "/");
+  }
+
+  private static class WatcherCloser implements Runnable {
+    private final WatchService watcher;
+
+    WatcherCloser(WatchService watcher) {
+      this.watcher = watcher;
+    }
+
+    @Override
+    public void run() {
+      try {
+        watcher.close();
+      } catch (IOException e) {
+        LOG.warn("Cannot close watcher of resource files", e);
+      }
+    }
+  }
+}
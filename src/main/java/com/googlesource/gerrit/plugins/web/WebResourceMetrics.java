@@ -0,0 +1,60 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.web;
+
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/** Metrics of the web resources served by the plugins, for all the plugins. */
+@Singleton
+public class WebResourceMetrics {
+
+  @Inject
+  WebResourceMetrics(MetricMaker metricMaker, GzipVariantCache gzipVariants) {
+    metricMaker.newCallbackMetric(
+        "web/gzip/source_bytes",
+        Long.class,
+        new Description("Bytes of web resources compressed into gzip variants")
+            .setCumulative()
+            .setUnit(Units.BYTES),
+        gzipVariants::getSourceBytes);
+    metricMaker.newCallbackMetric(
+        "web/gzip/compressed_bytes",
+        Long.class,
+        new Description("Bytes of the gzip variants of web resources")
+            .setCumulative()
+            .setUnit(Units.BYTES),
+        gzipVariants::getCompressedBytes);
+    metricMaker.newCallbackMetric(
+        "web/gzip/compression_ratio",
+        Double.class,
+        new Description("Ratio of the size of gzip variants to the size of their web resources")
+            .setGauge(),
+        () -> compressionRatio(gzipVariants.getSourceBytes(), gzipVariants.getCompressedBytes()));
+    metricMaker.newCallbackMetric(
+        "web/gzip/cached_bytes",
+        Long.class,
+        new Description("Bytes of gzip variants of web resources kept in memory")
+            .setGauge()
+            .setUnit(Units.BYTES),
+        gzipVariants::getCachedBytes);
+  }
+
+  private static double compressionRatio(long sourceBytes, long compressedBytes) {
+    return sourceBytes > 0 ? (double) compressedBytes / sourceBytes : 0;
+  }
+}
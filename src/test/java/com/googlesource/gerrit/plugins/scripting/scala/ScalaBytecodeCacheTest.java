@@ -0,0 +1,88 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.server.config.PluginConfig;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ScalaBytecodeCacheTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ScalaBytecodeCache cache;
+  private List<Path> scalaFiles;
+
+  @Before
+  public void setUp() throws Exception {
+    cache =
+        new ScalaBytecodeCache(
+            temporaryFolder.newFolder("data").toPath(),
+            new ScalaProviderConfig(
+                PluginConfig.createFromGerritConfig("scala-provider", new Config())));
+    Path scalaFile = temporaryFolder.newFolder("plugins").toPath().resolve("hello-1.0.scala");
+    Files.write(scalaFile, "class Hello".getBytes(UTF_8));
+    scalaFiles = ImmutableList.of(scalaFile);
+  }
+
+  @Test
+  public void keyIsStableAcrossTemporaryCopiesOfTheClassPath() throws Exception {
+    // Gerrit copies its libraries and the provider jar to new temporary files on each start
+    String firstStart =
+        ScalaSettings.fingerprintOf(
+            ImmutableList.of(
+                jar("gerrit_1/lib.jar", "lib"),
+                jar("gerrit_1/plugin_scala-provider_111.jar", "provider")));
+    String secondStart =
+        ScalaSettings.fingerprintOf(
+            ImmutableList.of(
+                jar("gerrit_2/lib.jar", "lib"),
+                jar("gerrit_2/plugin_scala-provider_222.jar", "provider")));
+
+    assertThat(cache.keyOf(scalaFiles, secondStart)).isEqualTo(cache.keyOf(scalaFiles, firstStart));
+  }
+
+  @Test
+  public void keyChangesWithTheContentOfTheClassPath() throws Exception {
+    String before = ScalaSettings.fingerprintOf(ImmutableList.of(jar("before/lib.jar", "lib-1")));
+    String after = ScalaSettings.fingerprintOf(ImmutableList.of(jar("after/lib.jar", "lib-2")));
+
+    assertThat(cache.keyOf(scalaFiles, after)).isNotEqualTo(cache.keyOf(scalaFiles, before));
+  }
+
+  @Test
+  public void keyChangesWithTheSources() throws Exception {
+    String fingerprint = ScalaSettings.fingerprintOf(ImmutableList.of(jar("lib.jar", "lib")));
+    String before = cache.keyOf(scalaFiles, fingerprint);
+    Files.write(scalaFiles.get(0), "class Hello2".getBytes(UTF_8));
+
+    assertThat(cache.keyOf(scalaFiles, fingerprint)).isNotEqualTo(before);
+  }
+
+  private String jar(String path, String content) throws Exception {
+    Path jar = temporaryFolder.getRoot().toPath().resolve(path);
+    Files.createDirectories(jar.getParent());
+    Files.write(jar, content.getBytes(UTF_8));
+    return jar.toString();
+  }
+}
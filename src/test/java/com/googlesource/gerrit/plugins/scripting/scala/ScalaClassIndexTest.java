@@ -0,0 +1,87 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import com.google.common.collect.ImmutableList;
+import com.googlesource.gerrit.plugins.scripting.scala.ScalaPluginScriptEngine.ScalaClassLoader;
+import java.util.Set;
+import org.junit.Test;
+import scala.Predef;
+import scala.reflect.internal.util.BatchSourceFile;
+
+public class ScalaClassIndexTest {
+  private final ScalaCompiler compiler = new ScalaCompiler();
+
+  @Test
+  public void exportedClassIsAnEntryPoint() throws Exception {
+    ScalaClassIndex index =
+        index(
+            "import com.google.gerrit.extensions.annotations.Export\n"
+                + "@Export(\"hello\") class HelloServlet");
+
+    assertThat(entryPoints(index)).containsExactly("HelloServlet");
+    assertThat(index.getExports()).containsExactly("HelloServlet", "hello");
+  }
+
+  @Test
+  public void guiceModuleIsAnEntryPoint() throws Exception {
+    ScalaClassIndex index =
+        index(
+            "class Base extends com.google.inject.AbstractModule { override def configure() {} }\n"
+                + "class HelloModule extends Base");
+
+    assertThat(entryPoints(index)).containsExactly("Base", "HelloModule");
+  }
+
+  @Test
+  public void classWithOnlyScalaAnnotationsIsDefinedLazily() throws Exception {
+    ScalaClassIndex index = index("class Plain { def greet = \"hi\" }");
+
+    assertThat(index.getAnnotations("Plain")).contains("scala.reflect.ScalaSignature");
+    assertThat(entryPoints(index)).isEmpty();
+  }
+
+  @Test
+  public void localAndAnonymousClassesAreDefinedLazily() throws Exception {
+    ScalaClassIndex index =
+        index(
+            "import com.google.gerrit.extensions.annotations.Export\n"
+                + "object Factory {\n"
+                + "  def local = { @Export(\"local\") class Local; new Local }\n"
+                + "  def anonymous = new com.google.inject.AbstractModule { override def configure() {} }\n"
+                + "}");
+
+    assertThat(index.getClassNames()).hasSize(4);
+    assertThat(entryPoints(index)).isEmpty();
+    assertThat(index.getExports()).isEmpty();
+  }
+
+  private ScalaClassIndex index(String code) throws Exception {
+    ScalaClassLoader output = new ScalaClassLoader();
+    boolean compiled =
+        compiler.compile(
+            ImmutableList.of(
+                new BatchSourceFile("Plugin.scala", Predef.wrapCharArray(code.toCharArray()))),
+            output.getVirtualDirectory());
+    assertWithMessage(compiler.getReporter().getOutput()).that(compiled).isTrue();
+    return ScalaClassIndex.of(output.getAllClassBytes());
+  }
+
+  private static Set<String> entryPoints(ScalaClassIndex index) {
+    return index.getPluginEntryPoints(ScalaClassIndexTest.class.getClassLoader());
+  }
+}
@@ -0,0 +1,124 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.gerrit.server.config.PluginConfig;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jgit.lib.Config;
+import org.junit.After;
+import org.junit.Test;
+
+public class ScalaCompileSchedulerTest {
+  private static final long MIB = 1024 * 1024;
+  private static final long MIN_FREE_HEAP = 100 * MIB;
+
+  private final AtomicLong freeHeap = new AtomicLong();
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private ScalaCompileScheduler scheduler;
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void compilationIsAdmittedWhenNothingElseCompiles() throws Exception {
+    createScheduler(1);
+    freeHeap.set(0);
+
+    try (ScalaCompileScheduler.Admission admission = scheduler.admit("large", 1024 * MIB)) {
+      assertThat(scheduler.getQueueDepth()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void concurrentCompilationsAreCapped() throws Exception {
+    createScheduler(2);
+    freeHeap.set(1024 * 1024 * MIB);
+
+    ScalaCompileScheduler.Admission first = scheduler.admit("first", 0);
+    ScalaCompileScheduler.Admission second = scheduler.admit("second", 0);
+    Future<ScalaCompileScheduler.Admission> third = admitInBackground("third", 0);
+    awaitQueueDepth(1);
+    assertThat(third.isDone()).isFalse();
+
+    first.close();
+    third.get(10, SECONDS).close();
+    second.close();
+    assertThat(scheduler.getQueueDepth()).isEqualTo(0);
+  }
+
+  @Test
+  public void compilationsAreAdmittedInArrivalOrder() throws Exception {
+    createScheduler(4);
+    long largeSourceBytes = 200 * MIB / 1024;
+    long runningEstimate = ScalaCompileScheduler.estimateHeap(0);
+    long largeEstimate = ScalaCompileScheduler.estimateHeap(largeSourceBytes);
+    long smallEstimate = ScalaCompileScheduler.estimateHeap(0);
+    // Room for the small compilation, but not for the large one ahead of it
+    freeHeap.set(MIN_FREE_HEAP + runningEstimate + smallEstimate);
+
+    try (ScalaCompileScheduler.Admission running = scheduler.admit("running", 0)) {
+      Future<ScalaCompileScheduler.Admission> large = admitInBackground("large", largeSourceBytes);
+      awaitQueueDepth(1);
+      Future<ScalaCompileScheduler.Admission> small = admitInBackground("small", 0);
+      awaitQueueDepth(2);
+      assertThat(large.isDone()).isFalse();
+      assertThat(small.isDone()).isFalse();
+
+      // Room for the large compilation only
+      freeHeap.set(MIN_FREE_HEAP + runningEstimate + largeEstimate);
+      ScalaCompileScheduler.Admission largeAdmission = large.get(10, SECONDS);
+      awaitQueueDepth(1);
+      assertThat(small.isDone()).isFalse();
+
+      largeAdmission.close();
+      small.get(10, SECONDS).close();
+    }
+  }
+
+  private void createScheduler(int maxConcurrentCompilations) {
+    Config gerritConfig = new Config();
+    gerritConfig.setInt(
+        "plugin", "scala-provider", "maxConcurrentCompilations", maxConcurrentCompilations);
+    gerritConfig.setLong("plugin", "scala-provider", "compileMinFreeHeap", MIN_FREE_HEAP);
+    scheduler =
+        new ScalaCompileScheduler(
+            new ScalaProviderConfig(
+                PluginConfig.createFromGerritConfig("scala-provider", gerritConfig)),
+            freeHeap::get);
+  }
+
+  private Future<ScalaCompileScheduler.Admission> admitInBackground(
+      String pluginName, long sourceBytes) {
+    return executor.submit(() -> scheduler.admit(pluginName, sourceBytes));
+  }
+
+  private void awaitQueueDepth(int depth) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + SECONDS.toMillis(10);
+    while (scheduler.getQueueDepth() != depth) {
+      assertWithMessage("Timed out waiting for %s queued compilations", depth)
+          .that(System.currentTimeMillis())
+          .isLessThan(deadline);
+      Thread.sleep(10);
+    }
+  }
+}
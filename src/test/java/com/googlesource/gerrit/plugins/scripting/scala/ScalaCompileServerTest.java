@@ -0,0 +1,65 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.server.config.PluginConfig;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+import scala.Predef;
+import scala.reflect.internal.util.BatchSourceFile;
+import scala.reflect.internal.util.SourceFile;
+
+public class ScalaCompileServerTest {
+  private static final SourceFile A = source("p/A.scala", "package p\nclass A { def b = B(1) }");
+  private static final SourceFile B = source("p/B.scala", "package p\ncase class B(x: Int)");
+
+  private final ScalaCompileServer server =
+      new ScalaCompileServer(
+          new ScalaCompilerPool(
+              new ScalaProviderConfig(
+                  PluginConfig.createFromGerritConfig("scala-provider", new Config()))),
+          "token");
+
+  @Test
+  public void onlySourcesNotRetainedAreCompiledAgainstThePreviousState() throws Exception {
+    ScalaCompileResult first = server.compile(ImmutableList.of(A, B), null, ImmutableSet.of(), "1");
+    assertThat(first.isSuccess()).isTrue();
+    assertThat(first.isIncremental()).isFalse();
+
+    ScalaCompileResult second =
+        server.compile(ImmutableList.of(A, B), "1", ImmutableSet.of("p/B.scala"), "2");
+    assertThat(second.isSuccess()).isTrue();
+    assertThat(second.isIncremental()).isTrue();
+    assertThat(second.getClassBytes().keySet()).containsExactly("p.A");
+    assertThat(second.getTopLevelSymbols()).containsExactly("p.A", "p/A.scala");
+  }
+
+  @Test
+  public void allSourcesAreCompiledWhenThePreviousStateIsUnknown() throws Exception {
+    ScalaCompileResult result =
+        server.compile(ImmutableList.of(A, B), "unknown", ImmutableSet.of("p/B.scala"), "1");
+
+    assertThat(result.isSuccess()).isTrue();
+    assertThat(result.isIncremental()).isFalse();
+    assertThat(result.getClassBytes().keySet()).containsAtLeast("p.A", "p.B", "p.B$");
+  }
+
+  private static SourceFile source(String path, String code) {
+    return new BatchSourceFile(path, Predef.wrapCharArray(code.toCharArray()));
+  }
+}
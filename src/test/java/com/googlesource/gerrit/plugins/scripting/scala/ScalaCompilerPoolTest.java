@@ -0,0 +1,42 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gerrit.server.config.PluginConfig;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Test;
+
+public class ScalaCompilerPoolTest {
+  private final ScalaCompilerPool pool = new ScalaCompilerPool(configWithPoolSize(2));
+
+  @Test
+  public void compilerKeepingTheStateIsPreferred() throws Exception {
+    ScalaCompiler first = pool.borrow();
+    ScalaCompiler second = pool.borrow();
+    first.setStateId("plugin-state");
+    pool.release(first);
+    pool.release(second);
+
+    assertThat(pool.borrow("plugin-state")).isSameInstanceAs(first);
+    assertThat(pool.borrow("other-state")).isSameInstanceAs(second);
+  }
+
+  private static ScalaProviderConfig configWithPoolSize(int poolSize) {
+    Config config = new Config();
+    config.setInt("plugin", "scala-provider", "compilerPoolSize", poolSize);
+    return new ScalaProviderConfig(PluginConfig.createFromGerritConfig("scala-provider", config));
+  }
+}
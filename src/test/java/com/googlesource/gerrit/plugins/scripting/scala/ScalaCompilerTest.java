@@ -0,0 +1,133 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.googlesource.gerrit.plugins.scripting.scala.ScalaPluginScriptEngine.ScalaClassLoader;
+import java.util.Set;
+import org.junit.Test;
+import scala.Predef;
+import scala.reflect.internal.util.BatchSourceFile;
+import scala.reflect.internal.util.SourceFile;
+
+public class ScalaCompilerTest {
+  private final ScalaCompiler compiler = new ScalaCompiler();
+
+  @Test
+  public void pluginDoesNotSeeClassesOfPreviousRun() throws Exception {
+    assertThat(compile("first/Shared.scala", "class Shared { def answer = 42 }")).isTrue();
+
+    assertThat(compile("second/User.scala", "class User { def answer = new Shared().answer }"))
+        .isFalse();
+    assertThat(compiler.getReporter().getOutput()).contains("not found: type Shared");
+  }
+
+  @Test
+  public void pluginCanDefineClassesOfPreviousRunAgain() throws Exception {
+    assertThat(compile("first/Hello.scala", "package hello\nclass Hello { def x = 1 }")).isTrue();
+
+    assertThat(compile("second/Hello.scala", "package hello\nobject Hello { def y = 2 }")).isTrue();
+    assertThat(compiler.getTopLevelSymbols()).containsExactly("hello.Hello", "second/Hello.scala");
+  }
+
+  @Test
+  public void pluginCanBeCompiledAgain() throws Exception {
+    String source =
+        "class Hello { class Inner; def hello = Hello.greeting }\n"
+            + "object Hello { val greeting = 1 }";
+    assertThat(compile("hello/Hello.scala", source)).isTrue();
+
+    ScalaClassLoader output = new ScalaClassLoader();
+    assertThat(compile("hello/Hello.scala", source, output)).isTrue();
+    assertThat(output.getAllClassBytes().keySet())
+        .containsExactly("Hello", "Hello$Inner", "Hello$");
+  }
+
+  @Test
+  public void changedSourceCompilesAgainstRetainedClasses() throws Exception {
+    assertThat(
+            compile(
+                ImmutableSet.of(),
+                new ScalaClassLoader(),
+                source("p/A.scala", "package p\nclass A { def b = new B(1) }"),
+                source("p/B.scala", "package p\ncase class B(x: Int)")))
+        .isTrue();
+
+    ScalaClassLoader output = new ScalaClassLoader();
+    assertThat(
+            compile(
+                ImmutableSet.of("p/B.scala"),
+                output,
+                source("p/A.scala", "package p\nclass A { def b = B(2).copy(x = 3) }")))
+        .isTrue();
+    assertThat(output.getAllClassBytes().keySet()).containsExactly("p.A");
+    assertThat(compiler.getTopLevelSymbols()).containsExactly("p.A", "p/A.scala");
+  }
+
+  @Test
+  public void sourcesNotRetainedAreForgotten() throws Exception {
+    assertThat(
+            compile(
+                ImmutableSet.of(),
+                new ScalaClassLoader(),
+                source("p/A.scala", "package p\nclass A"),
+                source("p/B.scala", "package p\nclass B")))
+        .isTrue();
+
+    assertThat(
+            compile(
+                ImmutableSet.of("p/A.scala"),
+                new ScalaClassLoader(),
+                source("p/C.scala", "package p\nclass C { def a = new A; def b = new B }")))
+        .isFalse();
+    assertThat(compiler.getReporter().getOutput()).contains("not found: type B");
+    assertThat(compiler.getReporter().getOutput()).doesNotContain("not found: type A");
+  }
+
+  @Test
+  public void phaseTimesAreRecordedOnlyWhenEnabled() throws Exception {
+    assertThat(compile("hello/Hello.scala", "class Hello")).isTrue();
+    assertThat(compiler.getPhaseMillis()).isEmpty();
+
+    ScalaCompiler recordingCompiler = new ScalaCompiler(true);
+    assertThat(
+            recordingCompiler.compile(
+                ImmutableList.of(source("hello/Hello.scala", "class Hello")),
+                new ScalaClassLoader().getVirtualDirectory()))
+        .isTrue();
+    assertThat(recordingCompiler.getPhaseMillis()).containsKey("typer");
+    assertThat(recordingCompiler.getReporter().getDiagnostics()).isEmpty();
+  }
+
+  private boolean compile(
+      Set<String> retainedSources, ScalaClassLoader output, SourceFile... sources) {
+    return compiler.compile(
+        ImmutableList.copyOf(sources), retainedSources, output.getVirtualDirectory());
+  }
+
+  private static SourceFile source(String path, String code) {
+    return new BatchSourceFile(path, Predef.wrapCharArray(code.toCharArray()));
+  }
+
+  private boolean compile(String path, String code) {
+    return compile(path, code, new ScalaClassLoader());
+  }
+
+  private boolean compile(String path, String code, ScalaClassLoader output) {
+    return compiler.compile(ImmutableList.of(source(path, code)), output.getVirtualDirectory());
+  }
+}
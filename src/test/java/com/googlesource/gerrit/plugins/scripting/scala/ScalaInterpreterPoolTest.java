@@ -0,0 +1,72 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.io.ByteStreams;
+import com.google.gerrit.server.config.PluginConfig;
+import com.googlesource.gerrit.plugins.scripting.scala.ScalaInterpreterPool.Outcome;
+import org.eclipse.jgit.lib.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ScalaInterpreterPoolTest {
+  private static final String STOP_PROPERTY = "scala-provider.test.stop";
+
+  private ScalaInterpreterPool pool;
+
+  @Before
+  public void setUp() {
+    pool =
+        new ScalaInterpreterPool(
+            new ScalaProviderConfig(
+                PluginConfig.createFromGerritConfig("scala-provider", new Config())),
+            null,
+            null);
+    pool.start();
+  }
+
+  @After
+  public void tearDown() {
+    pool.stop();
+  }
+
+  @Test
+  public void sessionOfAbandonedSnippetIsOnlyGivenBackOnceItEnded() throws Exception {
+    assertThat(eval("()", SECONDS.toMillis(30))).isEqualTo(Outcome.SUCCESS);
+
+    // Ignores the interruption, as a busy loop does; waits for the first session to be reset
+    assertThat(
+            eval(
+                "while (System.getProperty(\"" + STOP_PROPERTY + "\") == null) {}",
+                SECONDS.toMillis(5)))
+        .isEqualTo(Outcome.TIMEOUT);
+    // Long enough for a replacement session to warm up
+    assertThat(eval("1 + 1", SECONDS.toMillis(10))).isEqualTo(Outcome.NO_SESSION);
+
+    System.setProperty(STOP_PROPERTY, "true");
+    try {
+      assertThat(eval("1 + 1", SECONDS.toMillis(30))).isEqualTo(Outcome.SUCCESS);
+    } finally {
+      System.clearProperty(STOP_PROPERTY);
+    }
+  }
+
+  private Outcome eval(String code, long timeoutMillis) throws Exception {
+    return pool.eval(code, ByteStreams.nullOutputStream(), timeoutMillis, Long.MAX_VALUE);
+  }
+}
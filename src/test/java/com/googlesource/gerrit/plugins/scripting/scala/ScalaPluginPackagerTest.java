@@ -0,0 +1,74 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.ByteStreams;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ScalaPluginPackagerTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void directoryPluginIsWrittenToJar() throws Exception {
+    Path srcDir = temporaryFolder.newFolder("hello-1.0.scala").toPath();
+    write(
+        srcDir.resolve("hello/HelloModule.scala"),
+        "package hello\n"
+            + "class HelloModule extends com.google.inject.AbstractModule {\n"
+            + "  override def configure() {}\n"
+            + "}\n");
+    write(
+        srcDir.resolve("static/index.html"),
+        "<h1>Hello</h1>\n<!--#include virtual=\"/static/footer.html\" -->\n");
+    write(srcDir.resolve("static/footer.html"), "<p>Footer</p>\n");
+    Path jarFile = temporaryFolder.getRoot().toPath().resolve("hello.jar");
+
+    new ScalaPluginPackager(temporaryFolder.newFolder("work").toPath()).writeJar(srcDir, jarFile);
+
+    try (JarFile jar = new JarFile(jarFile.toFile())) {
+      Attributes attributes = jar.getManifest().getMainAttributes();
+      assertThat(attributes.getValue("Gerrit-PluginName")).isEqualTo("hello");
+      assertThat(attributes.getValue("Gerrit-Module")).isEqualTo("hello.HelloModule");
+
+      List<String> entryNames = jar.stream().map(JarEntry::getName).collect(Collectors.toList());
+      assertThat(entryNames).contains("hello/HelloModule.class");
+      assertThat(entryNames).contains("static/footer.html");
+      assertThat(entryNames.stream().filter(name -> name.endsWith(".scala")).count()).isEqualTo(0);
+
+      String index =
+          new String(
+              ByteStreams.toByteArray(jar.getInputStream(jar.getEntry("static/index.html"))),
+              UTF_8);
+      assertThat(index).contains("<p>Footer</p>");
+      assertThat(index).doesNotContain("#include");
+    }
+  }
+
+  private static void write(Path file, String content) throws Exception {
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(UTF_8));
+  }
+}
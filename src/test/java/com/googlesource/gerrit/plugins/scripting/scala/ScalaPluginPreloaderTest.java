@@ -0,0 +1,49 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ScalaPluginPreloaderTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void nestedSourceEditedInPlaceChangesModificationTimeOfPlugin() throws Exception {
+    Path pluginDir = temporaryFolder.newFolder("hello-1.0.scala").toPath();
+    Path sourceDir = Files.createDirectories(pluginDir.resolve("hello"));
+    Path source = Files.write(sourceDir.resolve("Hello.scala"), "class Hello".getBytes(UTF_8));
+    setLastModifiedTime(1000, pluginDir, sourceDir, source);
+    FileTime compiled = ScalaPluginPreloader.lastModifiedOf(pluginDir);
+
+    Files.write(source, "class Hello2".getBytes(UTF_8));
+    setLastModifiedTime(2000, source);
+
+    assertThat(Files.getLastModifiedTime(pluginDir)).isEqualTo(FileTime.fromMillis(1000));
+    assertThat(ScalaPluginPreloader.lastModifiedOf(pluginDir)).isGreaterThan(compiled);
+  }
+
+  private static void setLastModifiedTime(long millis, Path... paths) throws Exception {
+    for (Path path : paths) {
+      Files.setLastModifiedTime(path, FileTime.fromMillis(millis));
+    }
+  }
+}
@@ -0,0 +1,132 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.SitePaths;
+import com.googlesource.gerrit.plugins.web.GzipVariantCache;
+import com.googlesource.gerrit.plugins.web.WebResourceCache;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ScalaPluginProviderTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ScalaProviderConfig config;
+  private ScalaCompilerPool compilerPool;
+  private ScalaIncrementalStates incrementalStates;
+  private ScalaPluginPreloader preloader;
+  private ScalaPluginProvider provider;
+  private Path pluginDir;
+
+  @Test
+  public void classLoaderOfRemovedPluginIsCollectable() throws Exception {
+    setUp(false);
+
+    assertCollected(loadAndRemovePlugin());
+    assertThat(incrementalStates.get(pluginDir).isPresent()).isFalse();
+  }
+
+  @Test
+  public void classLoaderOfRemovedPluginIsCollectableWhenReleasingCompilerState() throws Exception {
+    setUp(true);
+
+    assertCollected(loadAndRemovePlugin());
+  }
+
+  private void setUp(boolean releaseCompilerState) throws Exception {
+    Config gerritConfig = new Config();
+    gerritConfig.setBoolean("plugin", "scala-provider", "bytecodeCache", false);
+    gerritConfig.setBoolean(
+        "plugin", "scala-provider", "releaseCompilerState", releaseCompilerState);
+    config =
+        new ScalaProviderConfig(
+            PluginConfig.createFromGerritConfig("scala-provider", gerritConfig));
+    compilerPool = new ScalaCompilerPool(config);
+    incrementalStates = new ScalaIncrementalStates();
+    SitePaths sitePaths = new SitePaths(temporaryFolder.newFolder("site").toPath());
+    preloader = new ScalaPluginPreloader(sitePaths, null, this::newScriptEngine, config);
+    provider =
+        new ScalaPluginProvider(
+            this::newScriptEngine,
+            preloader,
+            new ScalaProviderMetrics(new DisabledMetricMaker()),
+            new GzipVariantCache(0),
+            new WebResourceCache(0),
+            "scala-provider");
+    pluginDir = Files.createDirectories(sitePaths.plugins_dir.resolve("hello-1.0.scala"));
+    Path scalaFile = Files.createDirectories(pluginDir.resolve("hello")).resolve("Hello.scala");
+    Files.write(scalaFile, "package hello\nclass Hello { def greet = \"hi\" }".getBytes(UTF_8));
+  }
+
+  /**
+   * Loads a plugin, recompiles it as the reloader would, then removes it while the recompilation is
+   * still pending; returns weak references to the class loaders of both compilations.
+   */
+  private List<WeakReference<ClassLoader>> loadAndRemovePlugin() throws Exception {
+    CompiledScalaPlugin loaded = CompiledScalaPlugin.compile(newScriptEngine(), pluginDir);
+    Class<?> hello = loaded.getScriptEngine().getClassLoader().loadClass("hello.Hello");
+    assertThat(hello.getMethod("greet").invoke(hello.getConstructor().newInstance()))
+        .isEqualTo("hi");
+    CompiledScalaPlugin recompiled = CompiledScalaPlugin.compile(newScriptEngine(), pluginDir);
+    preloader.put(
+        pluginDir,
+        ScalaPluginPreloader.lastModifiedOf(pluginDir),
+        CompletableFuture.completedFuture(recompiled));
+
+    MoreFiles.deleteRecursively(pluginDir, RecursiveDeleteOption.ALLOW_INSECURE);
+    provider.unload(pluginDir, loaded.getScriptEngine());
+
+    List<WeakReference<ClassLoader>> classLoaders = new ArrayList<>();
+    classLoaders.add(new WeakReference<>(loaded.getScriptEngine().getClassLoader()));
+    classLoaders.add(new WeakReference<>(recompiled.getScriptEngine().getClassLoader()));
+    return classLoaders;
+  }
+
+  private static void assertCollected(List<WeakReference<ClassLoader>> classLoaders)
+      throws InterruptedException {
+    for (int i = 0; i < 50 && classLoaders.stream().anyMatch(c -> c.get() != null); i++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    for (WeakReference<ClassLoader> classLoader : classLoaders) {
+      assertThat(classLoader.get()).isNull();
+    }
+  }
+
+  private ScalaPluginScriptEngine newScriptEngine() {
+    return new ScalaPluginScriptEngine(
+        compilerPool,
+        new ScalaBytecodeCache(temporaryFolder.getRoot().toPath().resolve("data"), config),
+        incrementalStates,
+        config,
+        new ScalaProviderMetrics(new DisabledMetricMaker()),
+        new ScalaCompileServerClient(config),
+        new ScalaCompileScheduler(config));
+  }
+}
@@ -0,0 +1,107 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.SitePaths;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.eclipse.jgit.lib.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ScalaPluginReloaderTest {
+  private static final long CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long EVENT_TIMEOUT_MILLIS = 10000;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path pluginDir;
+  private Path sourceDir;
+  private ScalaPluginReloader reloader;
+
+  @Before
+  public void setUp() throws Exception {
+    SitePaths sitePaths = new SitePaths(temporaryFolder.newFolder("site").toPath());
+    pluginDir = Files.createDirectories(sitePaths.plugins_dir.resolve("hello.scala"));
+    sourceDir = Files.createDirectories(pluginDir.resolve("hello"));
+    Files.write(sourceDir.resolve("Hello.scala"), "class Hello".getBytes(UTF_8));
+
+    Config gerritConfig = new Config();
+    gerritConfig.setBoolean("plugin", "scala-provider", "hotReload", true);
+    ScalaProviderConfig config =
+        new ScalaProviderConfig(
+            PluginConfig.createFromGerritConfig("scala-provider", gerritConfig));
+    reloader = new ScalaPluginReloader(sitePaths, null, null, null, null, config);
+    reloader.watchPlugins();
+  }
+
+  @After
+  public void tearDown() {
+    reloader.stop();
+  }
+
+  @Test
+  public void pluginIsRecompiledOnceItsSourcesAreStableForOneCheck() throws Exception {
+    Files.write(sourceDir.resolve("Hello.scala"), "class Hello2".getBytes(UTF_8));
+    awaitChangeAt(0);
+
+    Files.write(sourceDir.resolve("World.scala"), "class World".getBytes(UTF_8));
+    awaitChangeAt(CHECK_NANOS / 2);
+
+    assertThat(reloader.takeStableChanges(CHECK_NANOS)).isEmpty();
+    assertThat(reloader.takeStableChanges(CHECK_NANOS * 3 / 2)).containsExactly(pluginDir);
+    assertThat(reloader.getChangedPlugins()).isEmpty();
+  }
+
+  @Test
+  public void subdirectoryMovedAwayIsUnwatched() throws Exception {
+    assertThat(reloader.getWatchedDirs()).contains(sourceDir);
+
+    Files.move(sourceDir, temporaryFolder.getRoot().toPath().resolve("moved"));
+    awaitChangeAt(0);
+
+    assertThat(reloader.getWatchedDirs()).doesNotContain(sourceDir);
+    assertThat(reloader.getWatchedDirs()).contains(pluginDir);
+  }
+
+  /** Checks for changes at the given time until one of the plugin was recorded at that time. */
+  private void awaitChangeAt(long nowNanos) throws InterruptedException {
+    await(
+        () -> {
+          assertThat(reloader.takeStableChanges(nowNanos)).isEmpty();
+          Long changed = reloader.getChangedPlugins().get(pluginDir);
+          return changed != null && changed == nowNanos;
+        });
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + EVENT_TIMEOUT_MILLIS;
+    while (!condition.getAsBoolean()) {
+      assertWithMessage("Timed out waiting for changes")
+          .that(System.currentTimeMillis())
+          .isLessThan(deadline);
+      Thread.sleep(10);
+    }
+  }
+}
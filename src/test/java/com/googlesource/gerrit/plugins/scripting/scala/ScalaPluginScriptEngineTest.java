@@ -0,0 +1,200 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.scripting.scala;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.gerrit.extensions.events.GitReferenceUpdatedListener;
+import com.google.gerrit.metrics.Counter2;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.DisabledMetricMaker;
+import com.google.gerrit.metrics.Field;
+import com.google.gerrit.server.config.PluginConfig;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.eclipse.jgit.lib.Config;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ScalaPluginScriptEngineTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ScalaProviderConfig config;
+  private ScalaCompilerPool compilerPool;
+  private ScalaIncrementalStates incrementalStates;
+  private Path pluginDir;
+
+  @Before
+  public void setUp() throws Exception {
+    Config gerritConfig = new Config();
+    gerritConfig.setBoolean("plugin", "scala-provider", "bytecodeCache", false);
+    config =
+        new ScalaProviderConfig(
+            PluginConfig.createFromGerritConfig("scala-provider", gerritConfig));
+    compilerPool = new ScalaCompilerPool(config);
+    incrementalStates = new ScalaIncrementalStates();
+    pluginDir = temporaryFolder.newFolder("hello-1.0.scala").toPath();
+    write("hello/Greeting.scala", "package hello\ncase class Greeting(text: String)");
+    write("hello/Hello.scala", "package hello\nclass Hello { def greet = Greeting(\"hi\").text }");
+  }
+
+  @Test
+  public void changedSourceIsRecompiledAgainstClassesOfPreviousLoad() throws Exception {
+    ScalaPluginScriptEngine firstLoad = newScriptEngine();
+    firstLoad.eval(pluginDir);
+    write("hello/Hello.scala", "package hello\nclass Hello { def greet = Greeting(\"hey\").text }");
+
+    ScalaPluginScriptEngine secondLoad = newScriptEngine();
+    secondLoad.eval(pluginDir);
+
+    assertThat(greet(secondLoad)).isEqualTo("hey");
+    assertThat(secondLoad.getClassLoader().getAllLoadedClassNames())
+        .containsAtLeast("hello.Hello", "hello.Greeting", "hello.Greeting$");
+  }
+
+  @Test
+  public void stateIsKeptUntilTheLastLoadIsUnloaded() throws Exception {
+    ScalaPluginScriptEngine firstLoad = newScriptEngine();
+    firstLoad.eval(pluginDir);
+    ScalaPluginScriptEngine secondLoad = newScriptEngine();
+    secondLoad.eval(pluginDir);
+
+    // Gerrit stops the previous version of a plugin once the new one started
+    firstLoad.unload();
+    assertThat(incrementalStates.get(pluginDir).isPresent()).isTrue();
+
+    secondLoad.unload();
+    assertThat(incrementalStates.get(pluginDir).isPresent()).isFalse();
+  }
+
+  @Test
+  public void invocationsOfEntryPointsAreRecordedWhenInstrumented() throws Exception {
+    write(
+        "hello/Exports.scala",
+        "package hello\n"
+            + "import com.google.gerrit.extensions.annotations.{Export, Listen}\n"
+            + "import com.google.gerrit.extensions.events.GitReferenceUpdatedListener\n"
+            + "import com.google.gerrit.sshd.SshCommand\n"
+            + "@Export(\"greet\")\n"
+            + "class GreetCommand extends SshCommand {\n"
+            + "  override def run(): Unit = {}\n"
+            + "}\n"
+            + "@Listen\n"
+            + "class GreetingListener extends GitReferenceUpdatedListener {\n"
+            + "  override def onGitReferenceUpdated(event: GitReferenceUpdatedListener.Event): Unit =\n"
+            + "    throw new IllegalStateException(\"Cannot greet\")\n"
+            + "}\n"
+            + "@Export(\"plain\")\n"
+            + "class PlainExport {\n"
+            + "  def greet = \"hi\"\n"
+            + "}\n");
+    Config gerritConfig = new Config();
+    gerritConfig.setBoolean("plugin", "scala-provider", "bytecodeCache", false);
+    gerritConfig.setBoolean("plugin", "scala-provider", "instrumentExports", true);
+    ScalaProviderConfig instrumentedConfig =
+        new ScalaProviderConfig(
+            PluginConfig.createFromGerritConfig("scala-provider", gerritConfig));
+    CountingMetricMaker metricMaker = new CountingMetricMaker();
+    ScalaPluginScriptEngine scriptEngine =
+        newScriptEngine(instrumentedConfig, new ScalaProviderMetrics(metricMaker));
+    scriptEngine.eval(pluginDir);
+    ClassLoader classLoader = scriptEngine.getClassLoader();
+
+    Class<?> command = classLoader.loadClass("hello.GreetCommand");
+    Method run = command.getDeclaredMethod("run");
+    Object commandInstance = command.getConstructor().newInstance();
+    run.invoke(commandInstance);
+    run.invoke(commandInstance);
+
+    GitReferenceUpdatedListener listener =
+        (GitReferenceUpdatedListener)
+            classLoader.loadClass("hello.GreetingListener").getConstructor().newInstance();
+    assertThrows(IllegalStateException.class, () -> listener.onGitReferenceUpdated(null));
+
+    assertThat(metricMaker.counts)
+        .containsExactly(
+            "exports/calls/hello/greet", 2L,
+            "exports/calls/hello/GreetingListener", 1L,
+            "exports/errors/hello/GreetingListener", 1L);
+    assertThat(fieldNamesOf(command)).contains(ScalaExportInstrumenter.PROBE_FIELD);
+
+    // No entry point to record: the class is defined as compiled
+    Class<?> plainExport = classLoader.loadClass("hello.PlainExport");
+    assertThat(fieldNamesOf(plainExport)).doesNotContain(ScalaExportInstrumenter.PROBE_FIELD);
+    assertThat(plainExport.getMethod("greet").invoke(plainExport.getConstructor().newInstance()))
+        .isEqualTo("hi");
+  }
+
+  private ScalaPluginScriptEngine newScriptEngine() {
+    return newScriptEngine(config, new ScalaProviderMetrics(new DisabledMetricMaker()));
+  }
+
+  private ScalaPluginScriptEngine newScriptEngine(
+      ScalaProviderConfig config, ScalaProviderMetrics metrics) {
+    return new ScalaPluginScriptEngine(
+        compilerPool,
+        new ScalaBytecodeCache(temporaryFolder.getRoot().toPath().resolve("data"), config),
+        incrementalStates,
+        config,
+        metrics,
+        new ScalaCompileServerClient(config),
+        new ScalaCompileScheduler(config));
+  }
+
+  private static Object greet(ScalaPluginScriptEngine scriptEngine) throws Exception {
+    Class<?> hello = scriptEngine.getClassLoader().loadClass("hello.Hello");
+    return hello.getMethod("greet").invoke(hello.getConstructor().newInstance());
+  }
+
+  private static List<String> fieldNamesOf(Class<?> clazz) {
+    return Arrays.stream(clazz.getDeclaredFields())
+        .map(java.lang.reflect.Field::getName)
+        .collect(Collectors.toList());
+  }
+
+  private void write(String path, String code) throws Exception {
+    Path scalaFile = pluginDir.resolve(path);
+    Files.createDirectories(scalaFile.getParent());
+    Files.write(scalaFile, code.getBytes(UTF_8));
+  }
+
+  /** Counts the increments of the counters of two fields, by metric name and field values. */
+  private static class CountingMetricMaker extends DisabledMetricMaker {
+    final Map<String, Long> counts = new ConcurrentHashMap<>();
+
+    @Override
+    public <F1, F2> Counter2<F1, F2> newCounter(
+        String name, Description desc, Field<F1> field1, Field<F2> field2) {
+      return new Counter2<F1, F2>() {
+        @Override
+        public void incrementBy(F1 value1, F2 value2, long delta) {
+          counts.merge(name + "/" + value1 + "/" + value2, delta, Long::sum);
+        }
+
+        @Override
+        public void remove() {}
+      };
+    }
+  }
+}
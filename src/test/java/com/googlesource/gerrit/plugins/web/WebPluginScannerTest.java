@@ -0,0 +1,145 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.web;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.google.gerrit.server.plugins.PluginEntry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.GZIPInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WebPluginScannerTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path rootDir;
+  private WebPluginScanner scanner;
+  private byte[] script;
+  private long lastModifiedMillis = System.currentTimeMillis();
+
+  @Before
+  public void setUp() throws Exception {
+    rootDir = temporaryFolder.newFolder("static").toPath();
+    script = Strings.repeat("console.log('hello');\n", 50).getBytes(UTF_8);
+    Files.write(rootDir.resolve("app.js"), script);
+    scanner =
+        new WebPluginScanner(rootDir, new GzipVariantCache(1024 * 1024), new WebResourceCache(0));
+  }
+
+  @After
+  public void tearDown() {
+    scanner.close();
+  }
+
+  @Test
+  public void gzipVariantIsServedAsGzipFile() throws Exception {
+    PluginEntry variant = scanner.getEntry("app.js.gz").get();
+
+    assertThat(variant.getAttrs()).containsEntry(PluginEntry.ATTR_CONTENT_TYPE, "application/gzip");
+    try (InputStream in = new GZIPInputStream(scanner.getInputStream(variant))) {
+      assertThat(ByteStreams.toByteArray(in)).isEqualTo(script);
+    }
+  }
+
+  @Test
+  public void resourceIsServedUncompressed() throws Exception {
+    PluginEntry resource = scanner.getEntry("app.js").get();
+
+    try (InputStream in = scanner.getInputStream(resource)) {
+      assertThat(ByteStreams.toByteArray(in)).isEqualTo(script);
+    }
+  }
+
+  @Test
+  public void includeOutsideOfTheResourcesIsRejected() throws Exception {
+    Files.write(temporaryFolder.getRoot().toPath().resolve("secret.html"), bytes("secret"));
+    write("absolute.html", "<!--#include virtual=\"/../secret.html\" -->\n");
+    write("relative.html", "<!--#include virtual=\"../secret.html\" -->\n");
+
+    for (String page : new String[] {"absolute.html", "relative.html"}) {
+      IOException e = assertThrows(IOException.class, () -> read(page));
+      assertThat(e).hasMessageThat().contains("is outside of");
+    }
+  }
+
+  @Test
+  public void includeCycleIsRejected() throws Exception {
+    write("a.html", "<!--#include virtual=\"b.html\" -->\n");
+    write("b.html", "<!--#include virtual=\"a.html\" -->\n");
+
+    IOException e = assertThrows(IOException.class, () -> read("a.html"));
+    assertThat(e).hasMessageThat().contains("Cycle of SSI includes");
+  }
+
+  @Test
+  public void pageIsRenderedAgainWhenAnIncludeIsEdited() throws Exception {
+    write("page.html", "<h1>Page</h1>\n<!--#include virtual=\"include/footer.html\" -->\n");
+    Path footer = write("include/footer.html", "<p>v1</p>\n");
+    assertThat(read("page.html")).contains("<p>v1</p>");
+
+    Files.write(footer, bytes("<p>v2</p>\n"));
+    touch(footer);
+
+    assertThat(read("page.html")).contains("<p>v2</p>");
+  }
+
+  @Test
+  public void pageIsKeptWhenAnIncludeIsTouchedWithoutChange() throws Exception {
+    write("page.html", "<!--#include virtual=\"footer.html\" -->\n");
+    Path footer = write("footer.html", "<p>footer</p>\n");
+    SSIPageCache ssiPages = new SSIPageCache(rootDir);
+    SSIPageCache.RenderedPage rendered = ssiPages.get("page.html");
+
+    touch(footer);
+    assertThat(ssiPages.get("page.html")).isSameInstanceAs(rendered);
+
+    Files.write(footer, bytes("<p>new footer</p>\n"));
+    touch(footer);
+    assertThat(ssiPages.get("page.html")).isNotSameInstanceAs(rendered);
+  }
+
+  private Path write(String path, String content) throws IOException {
+    Path file = rootDir.resolve(path);
+    Files.createDirectories(file.getParent());
+    return Files.write(file, bytes(content));
+  }
+
+  private String read(String page) throws IOException {
+    try (InputStream in = scanner.getInputStream(new PluginEntry(page, 0))) {
+      return new String(ByteStreams.toByteArray(in), UTF_8);
+    }
+  }
+
+  /** Moves the modification time forward, past the resolution of the file system. */
+  private void touch(Path file) throws IOException {
+    lastModifiedMillis += 2000;
+    Files.setLastModifiedTime(file, FileTime.fromMillis(lastModifiedMillis));
+  }
+
+  private static byte[] bytes(String content) {
+    return content.getBytes(UTF_8);
+  }
+}
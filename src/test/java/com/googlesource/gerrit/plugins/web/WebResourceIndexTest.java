@@ -0,0 +1,40 @@
+// Copyright (C) 2026 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.web;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WebResourceIndexTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void closedIndexKeepsServingResources() throws Exception {
+    Path rootDir = temporaryFolder.newFolder("static").toPath();
+    Files.write(rootDir.resolve("app.js"), "var x;".getBytes(UTF_8));
+    WebResourceIndex index = new WebResourceIndex(rootDir);
+    assertThat(index.get("app.js")).isNotNull();
+
+    index.close();
+
+    assertThat(index.get("app.js").size).isEqualTo(6);
+    assertThat(index.get("missing.js")).isNull();
+  }
+}